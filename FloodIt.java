@@ -1,10 +1,58 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 import tester.Tester;
 import javalib.impworld.*;
 import java.awt.Color;
+import com.sun.management.ThreadMXBean;
 import javalib.worldimages.*; 
 
 // Represents a cell (interface datatype which includes the MtCell class 
@@ -24,91 +72,65 @@ class Cell implements ICell {
   int col;
   Color color;
   boolean flooded;
-  // the four adjacent cells to this one
-  ICell left;
-  ICell top;
-  ICell right;
-  ICell bottom;
+  // the board this cell is in and its size, where its four adjacent cells are
+  // looked up, or null before it is connected
+  ArrayList<ArrayList<Cell>> grid;
+  int size;
 
   Cell(int row, int col, Color color) {
     this.row = row;
     this.col = col;
     this.color = color;
     this.flooded = false;
-    this.left = null;
-    this.top = null;
-    this.right = null;
-    this.bottom = null;
+    this.grid = null;
+    this.size = 0;
   }
 
-  // EFFECT: properly connect this cell with the neighbors based on
-  // the given size and given board
+  // EFFECT: to connect this cell to the given board of the given size, where
+  // its neighbors are looked up from its row and column when they are asked
+  // for, instead of linking them all up front
   void connectCells(int size, ArrayList<ArrayList<Cell>> board) {
-    // deal with the top left corner
-    if (row == 0 && col == 0) {
-      this.left = new MtCell();
-      this.top = new MtCell();
-      this.right = board.get(row).get(col + 1);
-      this.bottom = board.get(row + 1).get(col);
-    }
-    // deal with the top right corner
-    else if (row == 0 && col == size - 1) {
-      this.left = board.get(row).get(col - 1);
-      this.top = new MtCell();
-      this.right = new MtCell();
-      this.bottom = board.get(row + 1).get(col);
-    }
-    // deal with the bottom left corner
-    else if (row == size - 1 && col == 0) {
-      this.left = new MtCell();
-      this.top = board.get(row - 1).get(col);
-      this.right = board.get(row).get(col + 1);
-      this.bottom = new MtCell();
-    }
-    // deal with the bottom right corner
-    else if (row == size - 1 && col == size - 1) {
-      this.left = board.get(row).get(col - 1);
-      this.top = board.get(row - 1).get(col);
-      this.right = new MtCell();
-      this.bottom = new MtCell();
-    }
-    // deal with the top middle cell
-    else if (row == 0 && col > 0 && col < size - 1) {
-      this.left = board.get(row).get(col - 1);
-      this.top = new MtCell();
-      this.right = board.get(row).get(col + 1);
-      this.bottom = board.get(row + 1).get(col);
-    }
-    // deal with the bottom middle cell
-    else if (row == size - 1 && col > 0 && col < size - 1) {
-      this.left = board.get(row).get(col - 1);
-      this.top = board.get(row - 1).get(col);
-      this.right = board.get(row).get(col + 1);
-      this.bottom = new MtCell();
-    }
-    // deal with the left border middle cell
-    else if (col == 0 && row > 0 && row < size - 1) {
-      this.left = new MtCell();
-      this.top = board.get(row - 1).get(col);
-      this.right = board.get(row).get(col + 1);
-      this.bottom = board.get(row + 1).get(col);
-    }
-    // deal with the right border middle cell
-    else if (col == size - 1 && row > 0 && row < size - 1) {
-      this.left = board.get(row).get(col - 1);
-      this.top = board.get(row - 1).get(col);
-      this.right = new MtCell();
-      this.bottom = board.get(row + 1).get(col);
-    }
-    // deal with the middle cell
-    else {
-      this.left = board.get(row).get(col - 1);
-      this.top = board.get(row - 1).get(col);
-      this.right = board.get(row).get(col + 1);
-      this.bottom = board.get(row + 1).get(col);
+    this.size = size;
+    this.grid = board;
+  }
+
+  // to return the cell at the given offsets of rows and columns from this one
+  // in its board, the shared MtCell if it is outside of the board, or null if
+  // this cell is not connected to a board
+  ICell neighbor(int rows, int cols) {
+    int row = this.row + rows;
+    int col = this.col + cols;
+    if (this.grid == null) {
+      return null;
+    }
+    else if (row < 0 || row >= this.size || col < 0 || col >= this.size) {
+      return MtCell.EMPTY;
+    }
+    else {
+      return this.grid.get(row).get(col);
     }
   }
 
+  // to return the cell to the left of this one
+  ICell left() {
+    return this.neighbor(0, -1);
+  }
+
+  // to return the cell above this one
+  ICell top() {
+    return this.neighbor(-1, 0);
+  }
+
+  // to return the cell to the right of this one
+  ICell right() {
+    return this.neighbor(0, 1);
+  }
+
+  // to return the cell below this one
+  ICell bottom() {
+    return this.neighbor(1, 0);
+  }
+
   // EFFECT: to update this cell to be flooded
   void updateFlooded() {
     this.flooded = true;
@@ -136,8 +158,8 @@ class Cell implements ICell {
 
   // to check if this cell is adjacent to flooded cell
   boolean adjToFlooded() {
-    return this.left.floodedICell() || this.top.floodedICell() || this.right.floodedICell()
-        || this.bottom.floodedICell();
+    return this.left().floodedICell() || this.top().floodedICell()
+        || this.right().floodedICell() || this.bottom().floodedICell();
   }
 
   // EFFECT: to modify the color of this cell to be the given color
@@ -169,6 +191,9 @@ class Cell implements ICell {
 
 // Represents an unexisted cell (to deal with the border)
 class MtCell implements ICell {
+  // the cell outside of the board, shared by every border
+  static final MtCell EMPTY = new MtCell();
+
   MtCell() {
 
   }
@@ -184,301 +209,5278 @@ class MtCell implements ICell {
   }
 }
 
-// to represent the Flood It World
-class FloodItWorld extends World {
-  // All the cells of the game
-  ArrayList<ArrayList<Cell>> board;
-  ArrayList<Cell> worklist = new ArrayList<Cell>();
-  // ArrayList of the default colors
-  ArrayList<Color> colors = new ArrayList<Color>(Arrays.asList(Color.RED, Color.YELLOW, Color.GREEN,
-      Color.ORANGE, Color.BLACK, Color.CYAN, Color.BLUE, Color.PINK));
-  Random rand = new Random();
-  Color floodColor = null;
-  int clicks = 0;
-  int maxClicks;
-  int time = 0;
-  int numColor;
+// to represent the shape of a board and which of its cells are adjacent: the
+// cells are numbered row by row, the cell at (row, col) at row * cols + col,
+// and a cell is adjacent to its neighbors as they are adjacent to it
+interface ITopology {
+  // to return the name of this topology
+  String name();
 
-  // the consructor: make sure the number of color is within the range of [3, 8]
-  // and the minimum of size is 2 so that the new created board is reasonable to
-  // be played
-  FloodItWorld(int size, int numColor) {
-    if (numColor > 8) {
-      throw new IllegalArgumentException("Invalid number of colors, the maximum is 8");
+  // to return the number of rows of the board
+  int rows();
+
+  // to return the number of cells per row of the board
+  int cols();
+
+  // to return the most neighbors a cell can have
+  int degree();
+
+  // to check if the cells are adjacent to the cells left, right, above and
+  // below them and to no others, as on a rectangular board
+  boolean isGrid();
+
+  // to return a topology of the same kind with the given rows and columns
+  ITopology withSize(int rows, int cols);
+
+  // EFFECT: to write the indices of the neighbors of the cell at the given
+  // index into the given array, which holds at least degree() of them, and
+  // return their number
+  int neighbors(int index, int[] out);
+
+  // EFFECT: to write the indices of the neighbors of the cell at the given
+  // index that are higher than it into the given array, and return their
+  // number, so that every pair of adjacent cells is seen once
+  int forward(int index, int[] out);
+}
+
+// to represent a rectangular board, where a cell is adjacent to the cells
+// left, right, above and below it
+class GridTopology implements ITopology {
+  int rows;
+  int cols;
+
+  GridTopology(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  public String name() {
+    return "grid";
+  }
+
+  public int rows() {
+    return this.rows;
+  }
+
+  public int cols() {
+    return this.cols;
+  }
+
+  public int degree() {
+    return 4;
+  }
+
+  public boolean isGrid() {
+    return true;
+  }
+
+  public ITopology withSize(int rows, int cols) {
+    return new GridTopology(rows, cols);
+  }
+
+  public int neighbors(int index, int[] out) {
+    int row = index / this.cols;
+    int col = index % this.cols;
+    int count = 0;
+    if (col > 0) {
+      out[count] = index - 1;
+      count = count + 1;
     }
-    else if (numColor < 3) {
-      throw new IllegalArgumentException("Invalid number of colors, the minimum is 3");
+    if (row > 0) {
+      out[count] = index - this.cols;
+      count = count + 1;
     }
-    else if (size < 2) {
-      throw new IllegalArgumentException("Invalid size, the minimum is 2");
+    if (col < this.cols - 1) {
+      out[count] = index + 1;
+      count = count + 1;
     }
-    else {
-      this.numColor = numColor;
-      this.board = this.createBoard(size, numColor);
-      this.connectCells(size);
-      this.startGame();
-      this.maxClicks = this.calMaxClicks(size, numColor);
+    if (row < this.rows - 1) {
+      out[count] = index + this.cols;
+      count = count + 1;
     }
+    return count;
   }
 
-  // the constructor for testing
-  FloodItWorld(int size, int numColor, int seed) {
-    this.numColor = numColor;
-    this.rand = new Random(seed);
-    this.board = this.createBoard(size, numColor);
-    this.maxClicks = this.calMaxClicks(size, numColor);
+  public int forward(int index, int[] out) {
+    int count = 0;
+    if (index % this.cols < this.cols - 1) {
+      out[count] = index + 1;
+      count = count + 1;
+    }
+    if (index < (this.rows - 1) * this.cols) {
+      out[count] = index + this.cols;
+      count = count + 1;
+    }
+    return count;
   }
+}
 
-  // the constructor for testing
-  FloodItWorld(int seed) {
-    this.rand = new Random(seed);
-    this.board = null;
+// to represent a rectangular board whose edges wrap around: the first and the
+// last cell of a row are adjacent, as are the first and the last cell of a
+// column
+class TorusTopology implements ITopology {
+  int rows;
+  int cols;
+
+  TorusTopology(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  public String name() {
+    return "torus";
+  }
+
+  public int rows() {
+    return this.rows;
+  }
+
+  public int cols() {
+    return this.cols;
+  }
+
+  public int degree() {
+    return 4;
+  }
+
+  public boolean isGrid() {
+    return false;
+  }
+
+  public ITopology withSize(int rows, int cols) {
+    return new TorusTopology(rows, cols);
   }
 
-  // to create the two-dimensional grid using the given size and number of color
-  ArrayList<ArrayList<Cell>> createBoard(int size, int numColor) {
-    ArrayList<Cell> rowBoard; // to store the each created row
-    ArrayList<ArrayList<Cell>> board = new ArrayList<ArrayList<Cell>>();
+  // with fewer than 3 rows or columns, the cells before and after a cell wrap
+  // around to the same cell or to the cell itself, which are written once or
+  // not at all
+  public int neighbors(int index, int[] out) {
+    int row = index / this.cols;
+    int col = index % this.cols;
+    int count = 0;
+    count = this.add(index, row * this.cols + (col + this.cols - 1) % this.cols, out, count);
+    count = this.add(index, ((row + this.rows - 1) % this.rows) * this.cols + col, out, count);
+    count = this.add(index, row * this.cols + (col + 1) % this.cols, out, count);
+    count = this.add(index, ((row + 1) % this.rows) * this.cols + col, out, count);
+    return count;
+  }
 
-    for (int row = 0; row < size; row = row + 1) {
-      rowBoard = new ArrayList<Cell>();
-      for (int col = 0; col < size; col = col + 1) {
-        rowBoard.add(new Cell(row, col, this.colors.get(this.rand.nextInt(numColor))));
+  // EFFECT: to write the given neighbor of the cell at the given index after
+  // the given number of neighbors in the given array, unless it is the cell
+  // itself or already written, and return the new number of neighbors
+  int add(int index, int neighbor, int[] out, int count) {
+    if (neighbor == index) {
+      return count;
+    }
+    for (int i = 0; i < count; i = i + 1) {
+      if (out[i] == neighbor) {
+        return count;
       }
-      board.add(rowBoard);
     }
-    return board;
+    out[count] = neighbor;
+    return count + 1;
   }
 
-  // EFFECT: updates the upper left cell of the board and also the adjacent cells
-  // with the same color to be flooded
-  void startGame() {
-    this.board.get(0).get(0).updateFlooded();
-    this.floodColor = this.board.get(0).get(0).getColor();
-    this.floodedAdjSameColor();
+  public int forward(int index, int[] out) {
+    int neighbors = this.neighbors(index, out);
+    int count = 0;
+    for (int i = 0; i < neighbors; i = i + 1) {
+      if (out[i] > index) {
+        out[count] = out[i];
+        count = count + 1;
+      }
+    }
+    return count;
+  }
+}
+
+// to represent a board of hexagons in rows, every odd row shifted right by half
+// a cell: a cell is adjacent to the cells left and right of it and to the two
+// cells it touches in the rows above and below
+class HexTopology implements ITopology {
+  int rows;
+  int cols;
+
+  HexTopology(int rows, int cols) {
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  public String name() {
+    return "hex";
+  }
+
+  public int rows() {
+    return this.rows;
+  }
+
+  public int cols() {
+    return this.cols;
+  }
+
+  public int degree() {
+    return 6;
+  }
+
+  public boolean isGrid() {
+    return false;
+  }
+
+  public ITopology withSize(int rows, int cols) {
+    return new HexTopology(rows, cols);
+  }
+
+  public int neighbors(int index, int[] out) {
+    int row = index / this.cols;
+    int col = index % this.cols;
+    int count = 0;
+    if (col > 0) {
+      out[count] = index - 1;
+      count = count + 1;
+    }
+    if (col < this.cols - 1) {
+      out[count] = index + 1;
+      count = count + 1;
+    }
+    // the cells touched in the rows above and below are the ones of the same
+    // column and of the column before it in an even row, after it in an odd one
+    int other = col - 1 + 2 * (row % 2);
+    if (row > 0) {
+      count = this.touch(row - 1, col, other, out, count);
+    }
+    if (row < this.rows - 1) {
+      count = this.touch(row + 1, col, other, out, count);
+    }
+    return count;
   }
 
-  // EFFECT: to connect the cells in this world based on the given size of grid
-  void connectCells(int size) {
-    for (int row = 0; row < size; row = row + 1) {
-      for (int col = 0; col < size; col = col + 1) {
-        this.board.get(row).get(col).connectCells(size, this.board);
+  public int forward(int index, int[] out) {
+    int neighbors = this.neighbors(index, out);
+    int count = 0;
+    for (int i = 0; i < neighbors; i = i + 1) {
+      if (out[i] > index) {
+        out[count] = out[i];
+        count = count + 1;
       }
     }
+    return count;
   }
 
-  // to calculate the max clicks based on the size and number of color
-  int calMaxClicks(int size, int numColor) {
-    if (numColor % 2 != 0) {
-      return (size / 2) * ((numColor + 1) / 2);
+  // EFFECT: to write the cells of the given row at the given column and at the
+  // given other column, if it is on the board, into the given array after the
+  // given number of cells, and return the new number
+  int touch(int row, int col, int other, int[] out, int count) {
+    out[count] = row * this.cols + col;
+    if (other >= 0 && other < this.cols) {
+      out[count + 1] = row * this.cols + other;
+      return count + 2;
     }
     else {
-      return (size / 2) * (numColor / 2 + 1);
+      return count + 1;
     }
   }
+}
+
+// to represent the game area as flat primitive arrays: the cell at (row, col)
+// is stored at index row * size + col, its color as an index into the palette
+// and its flooded state as a bit. Which cells are adjacent is up to the
+// topology of the board, a square grid unless it is given another one
+class FloodItBoard {
+  // the number of cells per row, which is the number of rows of a square board
+  int size;
+  ITopology topology;
+  // the neighbors of the cell being expanded from
+  int[] adjacent;
+  // the index of the color of each cell in the palette
+  byte[] colors;
+  // the flooded cells of the board
+  BitSet flooded;
+  ArrayList<Color> palette;
+  // the unflooded cells adjacent to the flooded area, bucketed by their color
+  int[][] frontier;
+  int[] frontierSize;
+  BitSet inFrontier;
+  // the cells flooded by the last flood, in the order they were flooded
+  int[] queue;
+  int queueSize;
+  // the number of flooded cells, and of unflooded cells of each color
+  int floodedCount;
+  int[] colorCounts;
+
+  FloodItBoard(int size, ArrayList<Color> palette) {
+    this(new GridTopology(size, size), palette);
+  }
 
-  // to make the scene of this world
-  public WorldScene makeScene() {
-    int size = this.board.size();
-    WorldScene ws = new WorldScene(size * 20 + 250, size * 20 + 60); // the size of each cell is 20
-    for (int row = 0; row < size; row = row + 1) {
-      for (int col = 0; col < size; col = col + 1) {
-        ws.placeImageXY(this.board.get(row).get(col).drawCell(), col * 20 + 10, row * 20 + 10);
+  // the constructor of a board of the given topology, with cells of the first
+  // color of the palette
+  FloodItBoard(ITopology topology, ArrayList<Color> palette) {
+    int area = topology.rows() * topology.cols();
+    this.size = topology.cols();
+    this.topology = topology;
+    this.adjacent = new int[topology.degree()];
+    this.colors = new byte[area];
+    this.flooded = new BitSet(area);
+    this.palette = palette;
+    this.floodedCount = 0;
+    this.colorCounts = new int[palette.size()];
+    this.colorCounts[0] = area;
+    this.frontier = new int[palette.size()][16];
+    this.frontierSize = new int[palette.size()];
+    this.inFrontier = new BitSet(area);
+    this.queue = new int[16];
+    this.queueSize = 0;
+  }
+
+  // copy the given colors into a new board with no flooded cells
+  FloodItBoard(int size, byte[] colors, ArrayList<Color> palette) {
+    this(new GridTopology(size, size), colors, palette);
+  }
+
+  // copy the given colors into a new board of the given topology with no
+  // flooded cells
+  FloodItBoard(ITopology topology, byte[] colors, ArrayList<Color> palette) {
+    this(topology, palette);
+    System.arraycopy(colors, 0, this.colors, 0, this.area());
+    this.countColors();
+  }
+
+  // the constructor for testing: copy the colors and flooded state of the given
+  // grid of cells
+  FloodItBoard(ArrayList<ArrayList<Cell>> cells, ArrayList<Color> palette) {
+    this(cells.size(), palette);
+    for (int row = 0; row < this.size; row = row + 1) {
+      for (int col = 0; col < this.size; col = col + 1) {
+        Cell cell = cells.get(row).get(col);
+        this.colors[this.index(row, col)] = (byte) palette.indexOf(cell.getColor());
+        if (cell.flooded()) {
+          this.updateFlooded(this.index(row, col));
+        }
       }
     }
-    ws.placeImageXY(new TextImage(
-        "Clicks: " + Integer.toString(this.clicks) + "/" + Integer.toString(this.maxClicks), 20,
-        Color.BLACK), size * 20 + 125, 20);
-    ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
-        size * 20 + 125, 50);
-    ws.placeImageXY(new TextImage("Press the ‘r’ key to reset the game ", 16, Color.BLACK),
-        size * 10 + 125, size * 20 + 30);
-    return ws;
+    this.rebuildFrontier();
   }
 
-  // EFFECT: if the cell in the given mouse location is unflooded and has the
-  // different color
-  // as the flooded area, its color will be recorded, the method
-  // floodedAdjSameColor will be called
-  // and the top left cell will be added to the worklist
-  public void onMouseClicked(Posn pos) {
-    int row = pos.y / 20;
-    int col = pos.x / 20;
+  // to return the index of the cell at the given row and column
+  int index(int row, int col) {
+    return row * this.size + col;
+  }
 
-    // check if the cell is unflooded
-    if (!this.board.get(row).get(col).flooded()) {
-      // check if the cell has the different color as the flooded area
-      if (!this.board.get(row).get(col).sameColorCell(this.board.get(0).get(0))) {
-        this.floodColor = this.board.get(row).get(col).getColor();
-        this.floodedAdjSameColor();
-        this.worklist.add(this.board.get(0).get(0));
-        this.clicks = this.clicks + 1;
-      }
+  // to return the index of the cell under the given pixel of a picture of this
+  // board with the given number of pixels per cell, or -1 if the pixel is
+  // outside of the board
+  int indexAt(int x, int y, int cellSize) {
+    if (x < 0 || y < 0 || x >= this.size * cellSize || y >= this.size * cellSize) {
+      return -1;
+    }
+    else {
+      return this.index(y / cellSize, x / cellSize);
     }
   }
 
-  // EFFECT: to update the unflooded cell which is adjacent to the flooded ones
-  // and has the same color as floodColor starting from the top left corner
-  void floodedAdjSameColor() {
-    int size = this.board.size();
+  // to return the number of cells on this board
+  int area() {
+    return this.colors.length;
+  }
 
-    for (int row = 0; row < size; row = row + 1) {
-      for (int col = 0; col < size; col = col + 1) {
-        Cell cell = this.board.get(row).get(col);
+  // to return the palette index of the color of the cell at the given index
+  int colorAt(int index) {
+    return this.colors[index];
+  }
 
-        if (!cell.flooded() // to check if current cell is unflooded
-            && cell.adjToFlooded() // and if this cell is adjacent to flooded cell
-            // and if this cell has the same color as flooded color
-            && cell.getColor().equals(this.floodColor)) {
-          cell.updateFlooded();
-        }
+  // to return the color of the cell at the given index
+  Color colorOf(int index) {
+    return this.palette.get(this.colors[index]);
+  }
+
+  // to check if the cell at the given index is flooded
+  boolean isFlooded(int index) {
+    return this.flooded.get(index);
+  }
+
+  // EFFECT: to update the cell at the given index to be flooded
+  void updateFlooded(int index) {
+    if (!this.flooded.get(index)) {
+      this.flooded.set(index);
+      this.floodedCount = this.floodedCount + 1;
+      this.colorCounts[this.colors[index]] = this.colorCounts[this.colors[index]] - 1;
+    }
+  }
+
+  // EFFECT: to modify the color of the cell at the given index to be the given
+  // palette index
+  void updateColor(int index, int color) {
+    if (!this.flooded.get(index)) {
+      this.colorCounts[this.colors[index]] = this.colorCounts[this.colors[index]] - 1;
+      this.colorCounts[color] = this.colorCounts[color] + 1;
+    }
+    this.colors[index] = (byte) color;
+  }
+
+  // EFFECT: to count the unflooded cells of each color again, after the colors
+  // were copied into the board in bulk
+  void countColors() {
+    Arrays.fill(this.colorCounts, 0);
+    ColorKernels.histogram(this.colors, 0, this.area(), this.colorCounts);
+    for (int index = this.flooded.nextSetBit(0); index >= 0;
+        index = this.flooded.nextSetBit(index + 1)) {
+      this.colorCounts[this.colors[index]] = this.colorCounts[this.colors[index]] - 1;
+    }
+  }
+
+  // to check if this board has the same size and the same colors as the given
+  // one
+  boolean sameColors(FloodItBoard that) {
+    return this.size == that.size && this.area() == that.area()
+        && ColorKernels.equal(this.colors, that.colors, this.area());
+  }
+
+  // to check if every cell of this board is flooded
+  boolean allFlooded() {
+    return this.floodedCount == this.area();
+  }
+
+  // to return the number of unflooded cells of the given palette index
+  int remaining(int color) {
+    return this.colorCounts[color];
+  }
+
+  // to check if the cell at the given index is adjacent to a flooded cell
+  boolean adjToFlooded(int index) {
+    int count = this.topology.neighbors(index, this.adjacent);
+    for (int i = 0; i < count; i = i + 1) {
+      if (this.flooded.get(this.adjacent[i])) {
+        return true;
       }
     }
+    return false;
   }
 
-  // EFFECT: handles ticking of the clock and updating the world if needed
-  public void onTick() {
-    if (this.worklist.size() > 0) {
-      Cell cell = this.worklist.get(0);
-      // change the color of cell if it is already flooded
-      if (cell.flooded()) {
-        cell.updateColor(this.floodColor);
+  // EFFECT: to flood the top left cell and every cell connected to it through
+  // cells of its color
+  void floodStart() {
+    this.queueSize = 0;
+    this.absorb(0);
+    this.expand(this.colors[0]);
+  }
+
+  // EFFECT: to flood every unflooded cell connected to the flooded area through
+  // cells of the given color, starting from the frontier cells of that color, and
+  // return the number of newly flooded cells
+  int flood(int color) {
+    this.queueSize = 0;
+    for (int i = 0; i < this.frontierSize[color]; i = i + 1) {
+      if (!this.flooded.get(this.frontier[color][i])) {
+        this.absorb(this.frontier[color][i]);
       }
-      // if this cell's right and bottom cell is not MtCell and not contained in the
-      // worklist, add them to the worklist
-      this.addIfNotMtCellAndContained(cell.right);
-      this.addIfNotMtCellAndContained(cell.bottom);
-      this.worklist.remove(0); // remove the first one in the worklist
     }
-    else {
-      // to check if the user wins
-      if (this.allFlooded() && this.clicks <= this.maxClicks) {
-        this.endOfWorld("YOU WIN!");
+    this.frontierSize[color] = 0;
+    this.expand(color);
+    return this.queueSize;
+  }
+
+  // EFFECT: to take back the flood of the given move, which was the last one:
+  // the cells it flooded get back the color of the move, the frontier buckets
+  // it added to are cut back, and the bucket of its color gets its seeds back
+  void undo(MoveDelta delta) {
+    for (int i = 0; i < delta.cells.length; i = i + 1) {
+      int index = delta.cells[i];
+      this.flooded.clear(index);
+      this.colors[index] = (byte) delta.color;
+      this.floodedCount = this.floodedCount - 1;
+      this.colorCounts[delta.color] = this.colorCounts[delta.color] + 1;
+    }
+    for (int color = 0; color < this.frontierSize.length; color = color + 1) {
+      for (int i = delta.frontierSizes[color]; i < this.frontierSize[color]; i = i + 1) {
+        this.inFrontier.clear(this.frontier[color][i]);
       }
-      // to check if the user loses
-      else if (!this.allFlooded() && this.clicks == this.maxClicks) {
-        this.endOfWorld("YOU LOSE!");
+      this.frontierSize[color] = delta.frontierSizes[color];
+    }
+    System.arraycopy(delta.seeds, 0, this.frontier[delta.color], 0, delta.seeds.length);
+    this.frontierSize[delta.color] = delta.seeds.length;
+    for (int i = 0; i < delta.seeds.length; i = i + 1) {
+      if (!this.flooded.get(delta.seeds[i])) {
+        this.inFrontier.set(delta.seeds[i]);
       }
     }
-    this.time = this.time + 1;
+    this.queueSize = 0;
   }
 
-  // EFFECT: add the given ICell to the worklist if it is not MtCell and not
-  // already
-  // contained in the worklist
-  void addIfNotMtCellAndContained(ICell item) {
-    if (item.isCell()) {
-      boolean contained = false;
-      Cell specificItem = (Cell) item;
+  // EFFECT: to flood the cell at the given index and queue it to expand from
+  void absorb(int index) {
+    this.updateFlooded(index);
+    this.inFrontier.clear(index);
+    if (this.queueSize == this.queue.length) {
+      this.queue = Arrays.copyOf(this.queue, this.queue.length * 2);
+    }
+    this.queue[this.queueSize] = index;
+    this.queueSize = this.queueSize + 1;
+  }
 
-      // to chekc if the cell is already contained in the worklist
-      for (Cell cell : worklist) {
-        contained = contained || cell.sameCell(specificItem);
-      }
-      if (!contained) {
-        this.worklist.add(specificItem);
+  // EFFECT: to flood the unflooded cells of the given color at the set bits of
+  // the given word, where bit i is the cell at the given index plus i, and
+  // queue them, keeping the counts of the cells up to date once per word
+  void absorbWord(int start, long bits, int color) {
+    int count = Long.bitCount(bits);
+    if (this.queueSize + count > this.queue.length) {
+      this.queue = Arrays.copyOf(this.queue, Math.max(this.queue.length * 2,
+          this.queueSize + count));
+    }
+    long rest = bits;
+    while (rest != 0) {
+      int index = start + Long.numberOfTrailingZeros(rest);
+      this.flooded.set(index);
+      this.queue[this.queueSize] = index;
+      this.queueSize = this.queueSize + 1;
+      rest = rest & (rest - 1);
+    }
+    this.floodedCount = this.floodedCount + count;
+    this.colorCounts[color] = this.colorCounts[color] - count;
+  }
+
+  // EFFECT: to flood the cells of the given color reachable from the queued
+  // cells, and add their neighbors of other colors to the frontier
+  void expand(int color) {
+    for (int head = 0; head < this.queueSize; head = head + 1) {
+      int count = this.topology.neighbors(this.queue[head], this.adjacent);
+      for (int i = 0; i < count; i = i + 1) {
+        this.reach(this.adjacent[i], color);
       }
     }
   }
 
-  // EFFECT: to reset the game if user presses the ‘r’ key
-  public void onKeyEvent(String key) {
-    if (key.equals("r")) {
-      int size = this.board.size();
-      this.board = this.createBoard(size, this.numColor);
-      this.worklist = new ArrayList<Cell>();
-      this.floodColor = null;
-      this.clicks = 0;
-      this.connectCells(size);
-      this.startGame();
-      this.maxClicks = this.calMaxClicks(size, this.numColor);
-      this.time = 0;
+  // EFFECT: to flood the given unflooded neighbor of the flooded area if it has
+  // the given color, or else add it to the frontier
+  void reach(int index, int color) {
+    if (!this.flooded.get(index)) {
+      if (this.colors[index] == color) {
+        this.absorb(index);
+      }
+      else if (!this.inFrontier.get(index)) {
+        this.addToFrontier(index);
+      }
     }
   }
 
-  // to check if the whole board is all flooded as the same color
-  boolean allFlooded() {
-    boolean allFlooded = true;
-    int size = this.board.size();
+  // EFFECT: to add the cell at the given index to the frontier bucket of its color
+  void addToFrontier(int index) {
+    int color = this.colors[index];
+    if (this.frontierSize[color] == this.frontier[color].length) {
+      this.frontier[color] = Arrays.copyOf(this.frontier[color], this.frontier[color].length * 2);
+    }
+    this.frontier[color][this.frontierSize[color]] = index;
+    this.frontierSize[color] = this.frontierSize[color] + 1;
+    this.inFrontier.set(index);
+  }
 
-    for (int row = 0; row < size; row = row + 1) {
-      for (int col = 0; col < size; col = col + 1) {
-        allFlooded = allFlooded && this.board.get(row).get(col).sameColor(this.floodColor);
+  // EFFECT: to recompute the frontier from the flooded cells of this board
+  void rebuildFrontier() {
+    Arrays.fill(this.frontierSize, 0);
+    this.inFrontier.clear();
+    for (int index = 0; index < this.area(); index = index + 1) {
+      if (!this.flooded.get(index) && this.adjToFlooded(index)) {
+        this.addToFrontier(index);
       }
     }
-    return allFlooded;
   }
 
-  // EFFECT: update the scene based on the win or lose message
-  public WorldScene lastScene(String msg) {
-    int size = this.board.size();
-    WorldScene ws = new WorldScene(size * 20 + 250, size * 20 + 60);
-    if (msg.equals("YOU WIN!")) {
-      ws.placeImageXY(new TextImage("YOU WIN!", 30, Color.BLACK), size * 10 + 125, size * 6 + 20);
-      ws.placeImageXY(new TextImage("Score: " + Integer.toString(this.clicks), 20, Color.BLACK),
-          size * 10 + 125, size * 12 + 40);
-      ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
-          size * 10 + 125, size * 12 + 60);
+  // to return a view of the cell at the given row and column
+  Cell cellAt(int row, int col) {
+    Cell cell = new Cell(row, col, this.colorOf(this.index(row, col)));
+    cell.flooded = this.isFlooded(this.index(row, col));
+    return cell;
+  }
+
+  // to return a view of the cell at the given row and column, or an MtCell if
+  // it is outside of the board
+  ICell getCell(int row, int col) {
+    if (row < 0 || row >= this.size || col < 0 || col >= this.size) {
+      return MtCell.EMPTY;
     }
-    else if (msg.equals("YOU LOSE!")) {
-      ws.placeImageXY(new TextImage("YOU LOSE!", 30, Color.BLACK), size * 10 + 125, size * 6 + 20);
-      ws.placeImageXY(new TextImage("Score: " + Integer.toString(this.clicks), 20, Color.BLACK),
-          size * 10 + 125, size * 12 + 40);
-      ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
-          size * 10 + 125, size * 12 + 60);
+    else {
+      return this.cellAt(row, col);
     }
-    return ws;
   }
-} 
 
-// to represent the examples and tests for FloodItWorld class
-class ExamplesFloodIt {
-  FloodItWorld world1;
-  FloodItWorld world2;
-  ICell mtCell;
-  MtCell mtCell1;
-  Cell cell11;
-  Cell cell12;
-  Cell cell13;
-  Cell cell14;
-  Cell cell21;
-  Cell cell22;
-  Cell cell23;
-  Cell cell24;
-  Cell cell25;
-  Cell cell26;
-  Cell cell27;
-  Cell cell28;
-  Cell cell29;
-  Cell cell31;
-  Cell cell32;
-  Cell cell33;
-  Cell cell34;
-  Cell cell35;
-  Cell cell36;
-  Cell cell37;
-  Cell cell38;
-  Cell cell39;
-  ICell cell41;
-  ArrayList<ArrayList<Cell>> board1;
-  ArrayList<ArrayList<Cell>> board2;
-  ArrayList<Posn> posns;
+  // to return the views of all the cells of this board as a two-dimensional grid
+  ArrayList<ArrayList<Cell>> toCells() {
+    ArrayList<ArrayList<Cell>> cells = new ArrayList<ArrayList<Cell>>();
+    for (int row = 0; row < this.size; row = row + 1) {
+      ArrayList<Cell> rowCells = new ArrayList<Cell>();
+      for (int col = 0; col < this.size; col = col + 1) {
+        rowCells.add(this.cellAt(row, col));
+      }
+      cells.add(rowCells);
+    }
+    return cells;
+  }
+}
 
-  // to initialize the examples
-  void initFloodIt() {
-    this.world1 = new FloodItWorld(5); // board is null
-    this.world2 = new FloodItWorld(3, 4, 5); // not connected board
-    this.mtCell = new MtCell();
+// to represent the kernels that process the colors of a board many cells at a
+// time: the palette indices of 8 cells are read as one long, and the cells of
+// a color are found with a few arithmetic operations on the whole long
+// instead of a branch per cell. The cells left over at the end are processed
+// one by one, as every cell is when the floodit.scalar property is set
+class ColorKernels {
+  static final boolean SCALAR = Boolean.getBoolean("floodit.scalar");
+  // to read 8 bytes of a byte array as a long, the first one in the low byte
+  static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+      ByteOrder.LITTLE_ENDIAN);
+  // the lowest bit, and the 7 lowest bits, of every byte of a long
+  static final long ONES = 0x0101010101010101L;
+  static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+  // gathers the lowest bits of the 8 bytes of a long into its highest byte
+  static final long GATHER = 0x0102040810204080L;
 
-    this.cell11 = new Cell(0, 0, Color.GREEN);
-    this.cell12 = new Cell(0, 1, Color.YELLOW);
-    this.cell13 = new Cell(1, 0, Color.GREEN);
-    this.cell14 = new Cell(1, 1, Color.GREEN);
-    this.board1 = new ArrayList<ArrayList<Cell>>(
-        Arrays.asList(new ArrayList<Cell>(Arrays.asList(this.cell11, this.cell12)),
-            new ArrayList<Cell>(Arrays.asList(this.cell13, this.cell14))));
+  // to return the given 8 cells with the highest bit of every byte set where
+  // the cell has the given color, and every other bit clear
+  static long matches(long cells, int color) {
+    long diff = cells ^ (color * ONES);
+    return ~(((diff & LOWS) + LOWS) | diff | LOWS);
+  }
 
-    this.cell21 = new Cell(0, 0, Color.YELLOW);
+  // to return the given number, at most 64, of cells from the given index as
+  // a mask with bit i set if the cell at the index plus i has the given color
+  static long colorMask(byte[] colors, int from, int count, int color) {
+    if (SCALAR) {
+      return ColorKernels.colorMaskScalar(colors, from, count, color);
+    }
+    int full = count & ~7;
+    long mask = 0;
+    for (int i = 0; i < full; i = i + 8) {
+      long bytes = ColorKernels.matches((long) LONGS.get(colors, from + i), color);
+      mask = mask | (((bytes >>> 7) * GATHER) >>> 56) << i;
+    }
+    return mask | (ColorKernels.colorMaskScalar(colors, from + full, count - full, color)
+        << full);
+  }
+
+  // to return the mask of colorMask one cell at a time
+  static long colorMaskScalar(byte[] colors, int from, int count, int color) {
+    long mask = 0;
+    for (int i = 0; i < count; i = i + 1) {
+      if (colors[from + i] == color) {
+        mask = mask | (1L << i);
+      }
+    }
+    return mask;
+  }
+
+  // EFFECT: to add the number of cells of each color from the given index up
+  // to the given end to the given counts. Counting 8 cells at a time, into 4
+  // sets of counts or with a lane of a long per color, measured slower than
+  // this loop, so every cell is counted one at a time
+  static void histogram(byte[] colors, int from, int to, int[] counts) {
+    for (int i = from; i < to; i = i + 1) {
+      counts[colors[i]] = counts[colors[i]] + 1;
+    }
+  }
+
+  // to check if the given number of first cells of the given colors are the
+  // same, with the comparison of Arrays that the JIT compiles to vector
+  // instructions
+  static boolean equal(byte[] colors, byte[] others, int count) {
+    if (SCALAR) {
+      return ColorKernels.equalScalar(colors, others, count);
+    }
+    return Arrays.equals(colors, 0, count, others, 0, count);
+  }
+
+  // to check if the given number of first cells of the given colors are the
+  // same, one cell at a time
+  static boolean equalScalar(byte[] colors, byte[] others, int count) {
+    for (int i = 0; i < count; i = i + 1) {
+      if (colors[i] != others[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+// to represent the way the flooded area of a board grows: an engine floods the
+// cells of a color connected to the flooded area, leaving the cells it flooded
+// in the queue of the board, and takes a move back
+interface IFloodEngine {
+  // to return the name of this engine
+  String name();
+
+  // EFFECT: to set this engine up for the colors of the given board and flood
+  // its top left cell and every cell connected to it through cells of its color
+  void start(FloodItBoard board);
+
+  // EFFECT: to flood every unflooded cell of the given board connected to the
+  // flooded area through cells of the given color, and return their number
+  int flood(FloodItBoard board, int color);
+
+  // EFFECT: to take back the given move, which was the last one on the board
+  void undo(FloodItBoard board, MoveDelta delta);
+}
+
+// to represent the engine that expands the flooded area cell by cell from its
+// frontier, kept by the board between moves
+class FrontierFloodEngine implements IFloodEngine {
+  public String name() {
+    return "frontier";
+  }
+
+  public void start(FloodItBoard board) {
+    board.floodStart();
+  }
+
+  public int flood(FloodItBoard board, int color) {
+    return board.flood(color);
+  }
+
+  public void undo(FloodItBoard board, MoveDelta delta) {
+    board.undo(delta);
+  }
+}
+
+// to represent the engine that floods 64 cells at a time: every color is kept
+// as a bit mask per row of the board, and the flooded area grows word by word
+// by shifting its bits left and right and or-ing the words above and below,
+// masked with the cells of the color, and filling the runs of the color it
+// reaches in one pass each way with a carry trick. A word is visited again only
+// when a word next to it grew, and a move only starts from the words that may
+// hold cells of its color next to the flooded area, so it costs as much as the
+// words the flood reaches instead of the whole board
+class BitboardFloodEngine implements IFloodEngine {
+  int size;
+  // the number of words per row
+  int words;
+  // the number of colors up to the last one on the board
+  int colors;
+  // the cells of each color, and the flooded cells, one bit per cell with
+  // column c of row r at bit c % 64 of word r * words + c / 64
+  long[][] colorRows;
+  long[] flooded;
+  // the cells flooded by the move being made
+  long[] added;
+  // for each color, a bit per word that may hold an unflooded cell of that
+  // color next to the flooded area
+  long[][] candidates;
+  // the words to visit again, and whether each is queued
+  int[] queue;
+  boolean[] queued;
+  // the words the move being made flooded cells of, and whether each is listed
+  int[] grown;
+  int grownCount;
+  boolean[] isGrown;
+
+  public String name() {
+    return "bitboard";
+  }
+
+  public void start(FloodItBoard board) {
+    if (!board.topology.isGrid()) {
+      throw new IllegalArgumentException("The bitboard engine only floods grid boards");
+    }
+    int rows = board.topology.rows();
+    this.size = board.size;
+    this.words = (board.size + 63) >>> 6;
+    int total = rows * this.words;
+    this.colorRows = new long[board.palette.size()][total];
+    this.flooded = new long[total];
+    this.added = new long[total];
+    this.candidates = new long[board.palette.size()][(total + 63) >>> 6];
+    this.queue = new int[total];
+    this.queued = new boolean[total];
+    this.grown = new int[total];
+    this.grownCount = 0;
+    this.isGrown = new boolean[total];
+    int[] counts = new int[board.palette.size()];
+    ColorKernels.histogram(board.colors, 0, board.area(), counts);
+    this.colors = 0;
+    for (int color = 0; color < counts.length; color = color + 1) {
+      if (counts[color] > 0) {
+        this.colors = color + 1;
+      }
+    }
+    for (int row = 0; row < rows; row = row + 1) {
+      for (int w = 0; w < this.words; w = w + 1) {
+        int from = board.index(row, w * 64);
+        int count = Math.min(64, board.size - w * 64);
+        for (int color = 0; color < this.colors; color = color + 1) {
+          this.colorRows[color][row * this.words + w] =
+              ColorKernels.colorMask(board.colors, from, count, color);
+        }
+      }
+    }
+    for (int index = board.flooded.nextSetBit(0); index >= 0;
+        index = board.flooded.nextSetBit(index + 1)) {
+      int col = index % board.size;
+      this.flooded[(index / board.size) * this.words + (col >>> 6)] |= 1L << col;
+    }
+    for (int color = 0; color < this.candidates.length; color = color + 1) {
+      Arrays.fill(this.candidates[color], -1L);
+    }
+    board.queueSize = 0;
+    board.absorb(0);
+    this.flooded[0] |= 1L;
+    this.grow(board, board.colorAt(0));
+  }
+
+  public int flood(FloodItBoard board, int color) {
+    board.queueSize = 0;
+    return this.grow(board, color);
+  }
+
+  public void undo(FloodItBoard board, MoveDelta delta) {
+    board.undo(delta);
+    for (int i = 0; i < delta.cells.length; i = i + 1) {
+      int index = delta.cells[i];
+      int col = index % this.size;
+      int word = (index / this.size) * this.words + (col >>> 6);
+      this.flooded[word] &= ~(1L << col);
+      // the cells of the move next to the flooded area are cells of its color
+      // next to it again
+      this.candidates[delta.color][word >>> 6] |= 1L << word;
+    }
+  }
+
+  // EFFECT: to flood the cells of the given color connected to the flooded
+  // area, adding them to the flooded cells of the given board, and return
+  // their number
+  int grow(FloodItBoard board, int color) {
+    long[] allowed = this.colorRows[color];
+    long[] marks = this.candidates[color];
+    int count = 0;
+    for (int i = 0; i < marks.length; i = i + 1) {
+      long bits = marks[i];
+      marks[i] = 0;
+      while (bits != 0) {
+        int word = i * 64 + Long.numberOfTrailingZeros(bits);
+        if (word < this.queue.length) {
+          this.queue[count] = word;
+          this.queued[word] = true;
+          count = count + 1;
+        }
+        bits = bits & (bits - 1);
+      }
+    }
+    // the queue holds every word at most once, so it wraps around the array
+    int head = 0;
+    while (count > 0) {
+      int word = this.queue[head];
+      head = (head + 1) % this.queue.length;
+      count = count - 1;
+      this.queued[word] = false;
+      long bits = this.growWord(allowed, word);
+      if (bits != 0) {
+        if (!this.isGrown[word]) {
+          this.grown[this.grownCount] = word;
+          this.grownCount = this.grownCount + 1;
+          this.isGrown[word] = true;
+        }
+        int w = word % this.words;
+        if ((bits & 1L) != 0 && w > 0) {
+          count = this.enqueue(word - 1, head, count);
+        }
+        if (bits < 0 && w < this.words - 1) {
+          count = this.enqueue(word + 1, head, count);
+        }
+        if (word >= this.words) {
+          count = this.enqueue(word - this.words, head, count);
+        }
+        if (word + this.words < this.queue.length) {
+          count = this.enqueue(word + this.words, head, count);
+        }
+      }
+    }
+
+    int before = board.queueSize;
+    for (int i = 0; i < this.grownCount; i = i + 1) {
+      int word = this.grown[i];
+      int start = (word / this.words) * this.size + (word % this.words) * 64;
+      long bits = this.added[word];
+      this.isGrown[word] = false;
+      this.flooded[word] |= bits;
+      this.added[word] = 0;
+      this.mark(word, bits, color);
+      board.absorbWord(start, bits, color);
+    }
+    this.grownCount = 0;
+    return board.queueSize - before;
+  }
+
+  // EFFECT: to queue the given word after the given number of queued words
+  // from the given head, unless it is queued, and return the new number
+  int enqueue(int word, int head, int count) {
+    if (this.queued[word]) {
+      return count;
+    }
+    else {
+      this.queue[(head + count) % this.queue.length] = word;
+      this.queued[word] = true;
+      return count + 1;
+    }
+  }
+
+  // EFFECT: to add to the cells flooded by this move the unflooded cells of
+  // the given word in the given color mask that are connected to the flooded
+  // cells of the word or of the words next to it, and return them
+  long growWord(long[] allowed, int word) {
+    int w = word % this.words;
+    long reached = this.flooded[word] | this.added[word];
+    long near = (reached << 1) | (reached >>> 1);
+    if (w > 0) {
+      near = near | ((this.flooded[word - 1] | this.added[word - 1]) >>> 63);
+    }
+    if (w < this.words - 1) {
+      near = near | ((this.flooded[word + 1] | this.added[word + 1]) << 63);
+    }
+    if (word >= this.words) {
+      near = near | this.flooded[word - this.words] | this.added[word - this.words];
+    }
+    if (word + this.words < this.flooded.length) {
+      near = near | this.flooded[word + this.words] | this.added[word + this.words];
+    }
+    long free = allowed[word] & ~this.flooded[word];
+    long seeds = near & free & ~this.added[word];
+    if (seeds == 0) {
+      return 0;
+    }
+    // fill the runs of free cells of the color that hold a seed, first towards
+    // the higher columns and then towards the lower ones
+    long up = BitboardFloodEngine.fillUp(free, seeds);
+    long filled = Long.reverse(BitboardFloodEngine.fillUp(Long.reverse(free), Long.reverse(up)));
+    long bits = filled & ~this.added[word];
+    this.added[word] = this.added[word] | bits;
+    return bits;
+  }
+
+  // EFFECT: to mark the given word and the words next to it as candidates of
+  // every color but the given one where they hold unflooded cells of the color
+  // next to the given newly flooded cells of the word
+  void mark(int word, long bits, int skip) {
+    int w = word % this.words;
+    long near = (bits << 1) | (bits >>> 1);
+    for (int color = 0; color < this.colors; color = color + 1) {
+      long[] cells = this.colorRows[color];
+      long[] marks = this.candidates[color];
+      if (color != skip) {
+        if ((near & cells[word] & ~this.flooded[word]) != 0) {
+          marks[word >>> 6] |= 1L << word;
+        }
+        if (w > 0 && (bits & 1L) != 0 && (cells[word - 1] & ~this.flooded[word - 1]) < 0) {
+          marks[(word - 1) >>> 6] |= 1L << (word - 1);
+        }
+        if (w < this.words - 1 && bits < 0
+            && (cells[word + 1] & ~this.flooded[word + 1] & 1L) != 0) {
+          marks[(word + 1) >>> 6] |= 1L << (word + 1);
+        }
+        if (word >= this.words
+            && (bits & cells[word - this.words] & ~this.flooded[word - this.words]) != 0) {
+          marks[(word - this.words) >>> 6] |= 1L << (word - this.words);
+        }
+        if (word + this.words < this.flooded.length
+            && (bits & cells[word + this.words] & ~this.flooded[word + this.words]) != 0) {
+          marks[(word + this.words) >>> 6] |= 1L << (word + this.words);
+        }
+      }
+    }
+  }
+
+  // to return the runs of set bits of the given mask that hold a bit of the
+  // given seeds, from their lowest seed up to their highest bit: adding the
+  // seeds carries through the rest of their runs and clears them
+  static long fillUp(long mask, long seeds) {
+    return (mask & ~(mask + seeds)) | seeds;
+  }
+}
+
+// to represent the board compressed into a graph of its regions: every
+// connected area of cells with the same color is a node with a size and a
+// color, and the adjacency of the nodes is stored as compact int arrays. The
+// flooded area is one merged node that grows by absorbing its neighbors
+class RegionGraph {
+  // the number of regions
+  int count;
+  // the region of each cell of the board
+  int[] regionOf;
+  // the number of cells and the palette index of the color of each region
+  int[] sizes;
+  byte[] colors;
+  // the neighbors of region r are adj[adjStart[r]] to adj[adjStart[r + 1] - 1]
+  int[] adjStart;
+  int[] adj;
+  // the regions merged into the flooded area, and the number of their cells
+  BitSet flooded;
+  int floodedCells;
+  // the unflooded regions adjacent to the flooded area, bucketed by their color
+  int[][] frontier;
+  int[] frontierSize;
+  BitSet inFrontier;
+  // the color of the flooded area, and the Zobrist hash of the flooded regions
+  // and that color
+  int floodColor;
+  long hash;
+
+  // build the region graph of the given board from the colors of its cells
+  RegionGraph(FloodItBoard board) {
+    this.label(board);
+    this.connect(board);
+    this.flooded = new BitSet(this.count);
+    this.floodedCells = 0;
+    this.frontier = new int[board.palette.size()][16];
+    this.frontierSize = new int[board.palette.size()];
+    this.inFrontier = new BitSet(this.count);
+  }
+
+  // the constructor for searching the state of a graph on another thread: share
+  // the regions and their adjacency, which never change, and copy the flooded
+  // area, its frontier and its color
+  RegionGraph(RegionGraph that) {
+    this.count = that.count;
+    this.regionOf = that.regionOf;
+    this.sizes = that.sizes;
+    this.colors = that.colors;
+    this.adjStart = that.adjStart;
+    this.adj = that.adj;
+    this.flooded = (BitSet) that.flooded.clone();
+    this.floodedCells = that.floodedCells;
+    this.frontier = new int[that.frontier.length][];
+    for (int color = 0; color < that.frontier.length; color = color + 1) {
+      this.frontier[color] = Arrays.copyOf(that.frontier[color],
+          Math.max(that.frontierSize[color], 16));
+    }
+    this.frontierSize = that.frontierSize.clone();
+    this.inFrontier = (BitSet) that.inFrontier.clone();
+    this.floodColor = that.floodColor;
+    this.hash = that.hash;
+  }
+
+  // EFFECT: to number the regions of the given board, in the order of their
+  // first cells, and record their sizes and colors. The cells of a region are
+  // joined in a tree whose root is their first cell, every cell pointing to a
+  // lower one, so the cells can then be numbered in one pass in order
+  void label(FloodItBoard board) {
+    int[] adjacent = new int[board.topology.degree()];
+    int[] parent = new int[board.area()];
+    for (int index = 0; index < board.area(); index = index + 1) {
+      parent[index] = index;
+    }
+    for (int index = 0; index < board.area(); index = index + 1) {
+      int neighbors = board.topology.forward(index, adjacent);
+      for (int i = 0; i < neighbors; i = i + 1) {
+        if (board.colors[adjacent[i]] == board.colors[index]) {
+          RegionGraph.join(parent, index, adjacent[i]);
+        }
+      }
+    }
+
+    // the cell a cell points to is lower, so it is already numbered
+    this.regionOf = parent;
+    this.sizes = new int[16];
+    this.colors = new byte[16];
+    this.count = 0;
+    for (int index = 0; index < board.area(); index = index + 1) {
+      if (parent[index] == index) {
+        if (this.count == this.sizes.length) {
+          this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+          this.colors = Arrays.copyOf(this.colors, this.count * 2);
+        }
+        this.regionOf[index] = this.count;
+        this.colors[this.count] = (byte) board.colorAt(index);
+        this.count = this.count + 1;
+      }
+      else {
+        this.regionOf[index] = this.regionOf[parent[index]];
+      }
+      this.sizes[this.regionOf[index]] = this.sizes[this.regionOf[index]] + 1;
+    }
+    this.sizes = Arrays.copyOf(this.sizes, this.count);
+    this.colors = Arrays.copyOf(this.colors, this.count);
+  }
+
+  // EFFECT: to join the trees of the two given cells, pointing the higher root
+  // to the lower one, and halve the paths to them on the way
+  static void join(int[] parent, int first, int second) {
+    int a = first;
+    while (parent[a] != a) {
+      parent[a] = parent[parent[a]];
+      a = parent[a];
+    }
+    int b = second;
+    while (parent[b] != b) {
+      parent[b] = parent[parent[b]];
+      b = parent[b];
+    }
+    if (a < b) {
+      parent[b] = a;
+    }
+    else {
+      parent[a] = b;
+    }
+  }
+
+  // EFFECT: to compute the adjacency of the regions from the cells of the given
+  // board that touch a cell of another region
+  void connect(FloodItBoard board) {
+    // count the edges between cells of different regions, in both directions,
+    // from the cell with the lower index of each pair of adjacent cells
+    int[] adjacent = new int[board.topology.degree()];
+    int[] start = new int[this.count + 1];
+    for (int index = 0; index < board.area(); index = index + 1) {
+      int region = this.regionOf[index];
+      int neighbors = board.topology.forward(index, adjacent);
+      for (int i = 0; i < neighbors; i = i + 1) {
+        if (this.regionOf[adjacent[i]] != region) {
+          start[region + 1] = start[region + 1] + 1;
+          start[this.regionOf[adjacent[i]] + 1] = start[this.regionOf[adjacent[i]] + 1] + 1;
+        }
+      }
+    }
+    for (int region = 0; region < this.count; region = region + 1) {
+      start[region + 1] = start[region + 1] + start[region];
+    }
+
+    // fill in the edges, which may repeat when two regions touch more than once
+    int[] edges = new int[start[this.count]];
+    int[] next = Arrays.copyOf(start, this.count);
+    for (int index = 0; index < board.area(); index = index + 1) {
+      int region = this.regionOf[index];
+      int neighbors = board.topology.forward(index, adjacent);
+      for (int i = 0; i < neighbors; i = i + 1) {
+        if (this.regionOf[adjacent[i]] != region) {
+          this.addEdge(edges, next, region, this.regionOf[adjacent[i]]);
+        }
+      }
+    }
+
+    // drop the repeated edges, marking the neighbors seen for each region
+    int[] seenBy = new int[this.count];
+    Arrays.fill(seenBy, -1);
+    this.adjStart = new int[this.count + 1];
+    this.adj = new int[edges.length];
+    int adjCount = 0;
+    for (int region = 0; region < this.count; region = region + 1) {
+      this.adjStart[region] = adjCount;
+      for (int i = start[region]; i < start[region + 1]; i = i + 1) {
+        if (seenBy[edges[i]] != region) {
+          seenBy[edges[i]] = region;
+          this.adj[adjCount] = edges[i];
+          adjCount = adjCount + 1;
+        }
+      }
+    }
+    this.adjStart[this.count] = adjCount;
+    this.adj = Arrays.copyOf(this.adj, adjCount);
+  }
+
+  // EFFECT: to record the edge between the two given regions in both directions
+  void addEdge(int[] edges, int[] next, int from, int to) {
+    edges[next[from]] = to;
+    next[from] = next[from] + 1;
+    edges[next[to]] = from;
+    next[to] = next[to] + 1;
+  }
+
+  // to return the number of neighbors of the given region
+  int degree(int region) {
+    return this.adjStart[region + 1] - this.adjStart[region];
+  }
+
+  // to return the i-th neighbor of the given region
+  int neighbor(int region, int i) {
+    return this.adj[this.adjStart[region] + i];
+  }
+
+  // to check if the region of the cell at the given index is flooded
+  boolean isFlooded(int index) {
+    return this.flooded.get(this.regionOf[index]);
+  }
+
+  // to return the Zobrist key of the given region, computed on demand by
+  // mixing its number so that large graphs need no table of keys
+  static long zobrist(int region) {
+    long key = (region + 1) * 0x9E3779B97F4A7C15L;
+    key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+    key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+    return key ^ (key >>> 31);
+  }
+
+  // to return the Zobrist key of the given color of the flooded area
+  static long colorKey(int color) {
+    return RegionGraph.zobrist(-2 - color);
+  }
+
+  // EFFECT: to merge the region of the top left cell into the flooded area
+  void floodStart() {
+    this.floodColor = this.colors[this.regionOf[0]];
+    this.hash = RegionGraph.colorKey(this.floodColor);
+    this.absorb(this.regionOf[0]);
+  }
+
+  // EFFECT: to merge every frontier region of the given color into the flooded
+  // area, and return the number of newly flooded cells
+  int flood(int color) {
+    this.hash = this.hash ^ RegionGraph.colorKey(this.floodColor) ^ RegionGraph.colorKey(color);
+    this.floodColor = color;
+    int before = this.floodedCells;
+    int seeds = this.frontierSize[color];
+    this.frontierSize[color] = 0;
+    // adjacent regions never share a color, so only the seeds are absorbed
+    for (int i = 0; i < seeds; i = i + 1) {
+      this.absorb(this.frontier[color][i]);
+    }
+    return this.floodedCells - before;
+  }
+
+  // EFFECT: to take back the flood of the given move, which was the last one,
+  // splitting the regions it absorbed off the flooded area again
+  void undo(MoveDelta delta) {
+    for (int i = 0; i < delta.regions.length; i = i + 1) {
+      int region = delta.regions[i];
+      this.flooded.clear(region);
+      this.hash = this.hash ^ RegionGraph.zobrist(region);
+      this.floodedCells = this.floodedCells - this.sizes[region];
+    }
+    for (int color = 0; color < this.frontierSize.length; color = color + 1) {
+      for (int i = delta.regionFrontierSizes[color]; i < this.frontierSize[color]; i = i + 1) {
+        this.inFrontier.clear(this.frontier[color][i]);
+      }
+      this.frontierSize[color] = delta.regionFrontierSizes[color];
+    }
+    System.arraycopy(delta.regions, 0, this.frontier[delta.color], 0, delta.regions.length);
+    this.frontierSize[delta.color] = delta.regions.length;
+    for (int i = 0; i < delta.regions.length; i = i + 1) {
+      this.inFrontier.set(delta.regions[i]);
+    }
+    this.hash = this.hash ^ RegionGraph.colorKey(delta.color)
+        ^ RegionGraph.colorKey(delta.previousColor);
+    this.floodColor = delta.previousColor;
+  }
+
+  // EFFECT: to merge the given region into the flooded area and add its
+  // unflooded neighbors to the frontier
+  void absorb(int region) {
+    this.flooded.set(region);
+    this.hash = this.hash ^ RegionGraph.zobrist(region);
+    this.inFrontier.clear(region);
+    this.floodedCells = this.floodedCells + this.sizes[region];
+    for (int i = this.adjStart[region]; i < this.adjStart[region + 1]; i = i + 1) {
+      int next = this.adj[i];
+      if (!this.flooded.get(next) && !this.inFrontier.get(next)) {
+        int color = this.colors[next];
+        if (this.frontierSize[color] == this.frontier[color].length) {
+          this.frontier[color] = Arrays.copyOf(this.frontier[color],
+              this.frontier[color].length * 2);
+        }
+        this.frontier[color][this.frontierSize[color]] = next;
+        this.frontierSize[color] = this.frontierSize[color] + 1;
+        this.inFrontier.set(next);
+      }
+    }
+  }
+
+  // to return the number of cells the given color would flood
+  int gain(int color) {
+    int cells = 0;
+    for (int i = 0; i < this.frontierSize[color]; i = i + 1) {
+      cells = cells + this.sizes[this.frontier[color][i]];
+    }
+    return cells;
+  }
+
+  // to return the number of regions that are not yet flooded
+  int remainingRegions() {
+    return this.count - this.flooded.cardinality();
+  }
+}
+
+// to represent a fixed-size transposition table from state hashes to int
+// values, stored in primitive arrays. Every hash maps to a bucket of two slots:
+// the first keeps the entry with the smallest value, which for a search is the
+// state reached in the fewest moves and so the root of the largest subtree, and
+// the second is always replaced
+class TranspositionTable {
+  long[] keys;
+  int[] values;
+  // the slot index of the first slot of a bucket is hash & mask
+  int mask;
+  long hits;
+  long misses;
+  long stores;
+  long replacements;
+
+  // the number of slots is rounded up to a power of two
+  TranspositionTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 2)) << 1;
+    this.keys = new long[size];
+    this.values = new int[size];
+    this.mask = (size - 1) & ~1;
+    this.clear();
+  }
+
+  // EFFECT: to remove all the entries of this table
+  void clear() {
+    Arrays.fill(this.values, -1);
+  }
+
+  // to return the value stored for the given hash, or -1 if there is none
+  int probe(long hash) {
+    int slot = (int) hash & this.mask;
+    if (this.values[slot] != -1 && this.keys[slot] == hash) {
+      this.hits = this.hits + 1;
+      return this.values[slot];
+    }
+    else if (this.values[slot + 1] != -1 && this.keys[slot + 1] == hash) {
+      this.hits = this.hits + 1;
+      return this.values[slot + 1];
+    }
+    else {
+      this.misses = this.misses + 1;
+      return -1;
+    }
+  }
+
+  // EFFECT: to store the given non-negative value for the given hash
+  void store(long hash, int value) {
+    int slot = (int) hash & this.mask;
+    this.stores = this.stores + 1;
+    if (this.values[slot] == -1 || this.keys[slot] == hash || value <= this.values[slot]) {
+      if (this.values[slot] != -1 && this.keys[slot] != hash) {
+        // keep the entry it replaces in the second slot
+        this.replace(slot + 1, this.keys[slot], this.values[slot]);
+      }
+      this.keys[slot] = hash;
+      this.values[slot] = value;
+    }
+    else {
+      this.replace(slot + 1, hash, value);
+    }
+  }
+
+  // EFFECT: to overwrite the given slot with the given entry
+  void replace(int slot, long hash, int value) {
+    if (this.values[slot] != -1 && this.keys[slot] != hash) {
+      this.replacements = this.replacements + 1;
+    }
+    this.keys[slot] = hash;
+    this.values[slot] = value;
+  }
+
+  // EFFECT: to record that the state with the given hash was reached after the
+  // given number of moves, and return false if it was already reached in as few
+  // moves, so that it does not need to be searched again
+  boolean visit(long hash, int moves) {
+    int seen = this.probe(hash);
+    if (seen != -1 && seen <= moves) {
+      return false;
+    }
+    else {
+      this.store(hash, moves);
+      return true;
+    }
+  }
+
+  // to return the fraction of probes that found their hash
+  double hitRate() {
+    if (this.hits + this.misses == 0) {
+      return 0;
+    }
+    else {
+      return (double) this.hits / (this.hits + this.misses);
+    }
+  }
+}
+
+// to represent the moves found by a FloodItSolver for a board, and whether
+// they are known to be the fewest possible
+class SolverResult {
+  // the palette indices of the colors to pick, in order
+  int[] moves;
+  // the number of clicks of the solution, which is more than the number of
+  // moves when the budget ran out before they flooded the whole board
+  int clicks;
+  boolean optimal;
+  // the number of search nodes expanded to find the moves
+  long nodes;
+
+  SolverResult(int[] moves, boolean optimal, long nodes) {
+    this.moves = moves;
+    this.clicks = moves.length;
+    this.optimal = optimal;
+    this.nodes = nodes;
+  }
+
+  // the constructor for the first moves of a solution cut short by the budget,
+  // which takes at most the given number of clicks in all
+  SolverResult(int[] moves, int clicks, long nodes) {
+    this.moves = moves;
+    this.clicks = clicks;
+    this.optimal = false;
+    this.nodes = nodes;
+  }
+
+  // to return the number of clicks of this solution
+  int clicks() {
+    return this.clicks;
+  }
+}
+
+// to represent a solver that searches the region graph of a board for the
+// fewest moves that flood it: a greedy pass gives an upper bound, and an IDA*
+// search with admissible heuristics tightens it to the optimum unless it runs
+// out of its node or time budget
+class FloodItSolver {
+  RegionGraph graph;
+  int numColor;
+  long nodeBudget;
+  // the time budget in nanoseconds
+  long timeBudget;
+  // the regions of the current search state as bit sets: the flooded ones, and
+  // the unflooded neighbors of the flooded area for each color
+  long[] flooded;
+  long[][] frontier;
+  int[] frontierCount;
+  // the number of unflooded regions of each color, and of colors left
+  int[] remaining;
+  int colorsLeft;
+  // the frontier regions absorbed by the move at each depth, and the regions
+  // each move added to the frontier, to undo the moves
+  long[][] absorbedAt;
+  int[] addedStart;
+  int[] added;
+  int addedSize;
+  // the colors picked along the current search path, and the number of moves
+  // of the solution it holds once one is found
+  int[] path;
+  int solutionLength;
+  // the color of the flooded area before the move at each depth, and the
+  // Zobrist hash of the search state kept up to date by every move
+  int[] colorAt;
+  int floodColor;
+  long hash;
+  // the states already searched in the current iteration, created by solve
+  TranspositionTable table;
+  // the scratch space of the distance heuristic
+  int[] dist;
+  int[] bfsQueue;
+  long nodes;
+  long deadline;
+  boolean outOfBudget;
+  // the regions searched by the distance heuristic since the clock was last
+  // checked
+  long work;
+
+  FloodItSolver(RegionGraph graph, int numColor, long nodeBudget, long timeBudgetMillis) {
+    this.graph = graph;
+    this.numColor = numColor;
+    this.nodeBudget = nodeBudget;
+    this.timeBudget = timeBudgetMillis * 1000000L;
+    this.dist = new int[graph.count];
+    this.bfsQueue = new int[graph.count];
+    this.added = new int[16];
+  }
+
+  // the constructor for the tasks of a parallel search: copy the search state
+  // of the given solver, with undo records of its own
+  FloodItSolver(FloodItSolver that) {
+    this(that.graph, that.numColor, that.nodeBudget, 0);
+    this.flooded = that.flooded.clone();
+    this.frontier = new long[that.numColor][];
+    for (int color = 0; color < that.numColor; color = color + 1) {
+      this.frontier[color] = that.frontier[color].clone();
+    }
+    this.frontierCount = that.frontierCount.clone();
+    this.remaining = that.remaining.clone();
+    this.colorsLeft = that.colorsLeft;
+    this.addedSize = 0;
+    this.absorbedAt = new long[that.absorbedAt.length][that.flooded.length];
+    this.addedStart = new int[that.absorbedAt.length];
+    this.path = that.path.clone();
+    this.colorAt = that.colorAt.clone();
+    this.floodColor = that.floodColor;
+    this.hash = that.hash;
+  }
+
+  // EFFECT: to set the search state to the flooded regions of the graph,
+  // reusing the arrays of an earlier search so that a strategy can set it again
+  // before every move without allocating
+  void reset() {
+    int words = (this.graph.count + 63) / 64;
+    if (this.flooded == null) {
+      this.flooded = new long[words];
+      this.frontier = new long[this.numColor][words];
+      this.frontierCount = new int[this.numColor];
+      this.remaining = new int[this.numColor];
+      this.absorbedAt = new long[1][words];
+      this.addedStart = new int[1];
+      this.path = new int[1];
+      this.colorAt = new int[1];
+    }
+    else {
+      Arrays.fill(this.flooded, 0);
+      for (int color = 0; color < this.numColor; color = color + 1) {
+        Arrays.fill(this.frontier[color], 0);
+      }
+      Arrays.fill(this.frontierCount, 0);
+      Arrays.fill(this.remaining, 0);
+    }
+    this.colorsLeft = 0;
+    this.addedSize = 0;
+    this.floodColor = this.graph.floodColor;
+    this.hash = this.graph.hash;
+
+    for (int region = 0; region < this.graph.count; region = region + 1) {
+      if (this.graph.flooded.get(region)) {
+        this.flooded[region >>> 6] |= 1L << region;
+      }
+      else {
+        this.remaining[this.graph.colors[region]] = this.remaining[this.graph.colors[region]] + 1;
+      }
+    }
+    for (int color = 0; color < this.numColor; color = color + 1) {
+      if (this.remaining[color] > 0) {
+        this.colorsLeft = this.colorsLeft + 1;
+      }
+    }
+    for (int region = 0; region < this.graph.count; region = region + 1) {
+      if (this.isFlooded(region)) {
+        this.touch(region);
+      }
+    }
+    this.addedSize = 0;
+  }
+
+  // to check if the given region is flooded in the search state
+  boolean isFlooded(int region) {
+    return (this.flooded[region >>> 6] & (1L << region)) != 0;
+  }
+
+  // to check if the given region is in the frontier of the search state
+  boolean inFrontier(int region) {
+    return (this.frontier[this.graph.colors[region]][region >>> 6] & (1L << region)) != 0;
+  }
+
+  // EFFECT: to add the unflooded neighbors of the given flooded region that are
+  // not yet in the frontier to the frontier
+  void touch(int region) {
+    for (int i = this.graph.adjStart[region]; i < this.graph.adjStart[region + 1]; i = i + 1) {
+      int next = this.graph.adj[i];
+      if (!this.isFlooded(next) && !this.inFrontier(next)) {
+        int color = this.graph.colors[next];
+        this.frontier[color][next >>> 6] |= 1L << next;
+        this.frontierCount[color] = this.frontierCount[color] + 1;
+        if (this.addedSize == this.added.length) {
+          this.added = Arrays.copyOf(this.added, this.added.length * 2);
+        }
+        this.added[this.addedSize] = next;
+        this.addedSize = this.addedSize + 1;
+      }
+    }
+  }
+
+  // EFFECT: to make sure the undo records reach the given depth
+  void ensureDepth(int depth) {
+    if (depth >= this.absorbedAt.length) {
+      int length = Math.max(depth + 1, this.absorbedAt.length * 2);
+      int words = this.flooded.length;
+      long[][] absorbedAt = Arrays.copyOf(this.absorbedAt, length);
+      for (int i = this.absorbedAt.length; i < length; i = i + 1) {
+        absorbedAt[i] = new long[words];
+      }
+      this.absorbedAt = absorbedAt;
+      this.addedStart = Arrays.copyOf(this.addedStart, length);
+      this.path = Arrays.copyOf(this.path, length);
+      this.colorAt = Arrays.copyOf(this.colorAt, length);
+    }
+  }
+
+  // EFFECT: to flood the frontier regions of the given color, recording the
+  // move at the given depth so that it can be undone
+  void apply(int color, int depth) {
+    this.ensureDepth(depth);
+    this.colorAt[depth] = this.floodColor;
+    this.hash = this.hash ^ RegionGraph.colorKey(this.floodColor) ^ RegionGraph.colorKey(color);
+    this.floodColor = color;
+    long[] absorbed = this.absorbedAt[depth];
+    long[] bits = this.frontier[color];
+    for (int w = 0; w < bits.length; w = w + 1) {
+      absorbed[w] = bits[w];
+      this.flooded[w] |= bits[w];
+      bits[w] = 0;
+    }
+    this.remaining[color] = this.remaining[color] - this.frontierCount[color];
+    this.frontierCount[color] = 0;
+    if (this.remaining[color] == 0) {
+      this.colorsLeft = this.colorsLeft - 1;
+    }
+    this.addedStart[depth] = this.addedSize;
+    for (int w = 0; w < absorbed.length; w = w + 1) {
+      long word = absorbed[w];
+      while (word != 0) {
+        int region = w * 64 + Long.numberOfTrailingZeros(word);
+        this.hash = this.hash ^ RegionGraph.zobrist(region);
+        this.touch(region);
+        word = word & (word - 1);
+      }
+    }
+  }
+
+  // EFFECT: to undo the move of the given color made at the given depth
+  void undo(int color, int depth) {
+    for (int i = this.addedStart[depth]; i < this.addedSize; i = i + 1) {
+      int region = this.added[i];
+      this.frontier[this.graph.colors[region]][region >>> 6] &= ~(1L << region);
+      this.frontierCount[this.graph.colors[region]] = this.frontierCount[this.graph.colors[region]]
+          - 1;
+    }
+    this.addedSize = this.addedStart[depth];
+    long[] absorbed = this.absorbedAt[depth];
+    int count = 0;
+    for (int w = 0; w < absorbed.length; w = w + 1) {
+      long word = absorbed[w];
+      this.flooded[w] &= ~word;
+      this.frontier[color][w] = word;
+      count = count + Long.bitCount(word);
+      while (word != 0) {
+        this.hash = this.hash ^ RegionGraph.zobrist(w * 64 + Long.numberOfTrailingZeros(word));
+        word = word & (word - 1);
+      }
+    }
+    this.floodColor = this.colorAt[depth];
+    this.hash = this.hash ^ RegionGraph.colorKey(color) ^ RegionGraph.colorKey(this.floodColor);
+    if (this.remaining[color] == 0) {
+      this.colorsLeft = this.colorsLeft + 1;
+    }
+    this.remaining[color] = this.remaining[color] + count;
+    this.frontierCount[color] = count;
+  }
+
+  // to return the number of cells the given color would flood
+  int gain(int color) {
+    int cells = 0;
+    long[] bits = this.frontier[color];
+    for (int w = 0; w < bits.length; w = w + 1) {
+      long word = bits[w];
+      while (word != 0) {
+        cells = cells + this.graph.sizes[w * 64 + Long.numberOfTrailingZeros(word)];
+        word = word & (word - 1);
+      }
+    }
+    return cells;
+  }
+
+  // to return the colors of the frontier, ordered by the number of cells they
+  // would flood, most first
+  int[] movesByGain() {
+    int count = 0;
+    int[] order = new int[this.numColor];
+    int[] gains = new int[this.numColor];
+    for (int color = 0; color < this.numColor; color = color + 1) {
+      if (this.frontierCount[color] > 0) {
+        int gain = this.gain(color);
+        int i = count;
+        while (i > 0 && gains[i - 1] < gain) {
+          order[i] = order[i - 1];
+          gains[i] = gains[i - 1];
+          i = i - 1;
+        }
+        order[i] = color;
+        gains[i] = gain;
+        count = count + 1;
+      }
+    }
+    return Arrays.copyOf(order, count);
+  }
+
+  // to return a color whose remaining regions are all in the frontier, which
+  // is always safe to pick first, or -1 if there is none
+  int eliminatingColor() {
+    for (int color = 0; color < this.numColor; color = color + 1) {
+      if (this.frontierCount[color] > 0 && this.frontierCount[color] == this.remaining[color]) {
+        return color;
+      }
+    }
+    return -1;
+  }
+
+  // to return the greatest number of moves needed to reach an unflooded
+  // region, found by a breadth-first search out of the flooded area; every move
+  // advances the flooded area by at most one region, so it never overestimates
+  int maxDistance() {
+    int head = 0;
+    int tail = 0;
+    int farthest = 0;
+    Arrays.fill(this.dist, -1);
+    for (int color = 0; color < this.numColor; color = color + 1) {
+      long[] bits = this.frontier[color];
+      for (int w = 0; w < bits.length; w = w + 1) {
+        long word = bits[w];
+        while (word != 0) {
+          int region = w * 64 + Long.numberOfTrailingZeros(word);
+          this.dist[region] = 1;
+          this.bfsQueue[tail] = region;
+          tail = tail + 1;
+          word = word & (word - 1);
+        }
+      }
+    }
+    while (head < tail) {
+      int region = this.bfsQueue[head];
+      head = head + 1;
+      farthest = this.dist[region];
+      for (int i = this.graph.adjStart[region]; i < this.graph.adjStart[region + 1]; i = i + 1) {
+        int next = this.graph.adj[i];
+        if (this.dist[next] == -1 && !this.isFlooded(next)) {
+          this.dist[next] = this.dist[region] + 1;
+          this.bfsQueue[tail] = next;
+          tail = tail + 1;
+        }
+      }
+    }
+    return farthest;
+  }
+
+  // to return the moves of the greedy strategy from the current state, which
+  // picks an eliminating color when there is one and else the color that
+  // floods the most cells, until the board is flooded or a move ends past the
+  // given deadline
+  int[] greedy(long deadline) {
+    int[] moves = new int[16];
+    int count = 0;
+    while (this.colorsLeft > 0 && (count == 0 || System.nanoTime() <= deadline)) {
+      int best = this.eliminatingColor();
+      if (best == -1) {
+        int bestGain = 0;
+        for (int color = 0; color < this.numColor; color = color + 1) {
+          int gain = this.gain(color);
+          if (gain > bestGain) {
+            bestGain = gain;
+            best = color;
+          }
+        }
+      }
+      if (best == -1) {
+        throw new IllegalStateException("The flooded area has no neighbors left");
+      }
+      this.apply(best, 0);
+      this.addedSize = 0;
+      if (count == moves.length) {
+        moves = Arrays.copyOf(moves, count * 2);
+      }
+      moves[count] = best;
+      count = count + 1;
+    }
+    return Arrays.copyOf(moves, count);
+  }
+
+  // to search for a solution of at most the given number of moves from the
+  // current state after the given number of moves, returning -1 if one is
+  // found and left in path, or else the smallest estimate that exceeded bound
+  int search(int moves, int bound) {
+    this.nodes = this.nodes + 1;
+    if (this.nodes >= this.nodeBudget) {
+      this.outOfBudget = true;
+    }
+    // every node may run a distance search over all the regions, so the clock
+    // and the interrupt of a cancelled search are checked after a fixed amount
+    // of that work rather than of nodes
+    this.work = this.work + this.graph.count;
+    if (this.work >= 65536) {
+      this.work = 0;
+      if (System.nanoTime() > this.deadline || Thread.currentThread().isInterrupted()) {
+        this.outOfBudget = true;
+      }
+    }
+    if (this.colorsLeft == 0) {
+      this.solutionLength = moves;
+      return -1;
+    }
+    int estimate = moves + this.colorsLeft;
+    if (estimate <= bound) {
+      estimate = moves + Math.max(this.colorsLeft, this.maxDistance());
+    }
+    if (estimate > bound || this.outOfBudget) {
+      return estimate;
+    }
+    if (!this.table.visit(this.hash, moves)) {
+      // an earlier visit in this iteration searched it with more moves to spare
+      return Integer.MAX_VALUE;
+    }
+
+    int min = Integer.MAX_VALUE;
+    int only = this.eliminatingColor();
+    for (int color = 0; color < this.numColor; color = color + 1) {
+      if (this.frontierCount[color] > 0 && (only == -1 || only == color)) {
+        this.apply(color, moves);
+        this.path[moves] = color;
+        int next = this.search(moves + 1, bound);
+        if (next == -1) {
+          return -1;
+        }
+        this.undo(color, moves);
+        min = Math.min(min, next);
+      }
+    }
+    return min;
+  }
+
+  // to return the given moves, which the deadline cut short of flooding the
+  // board, as the start of a solution: picking every other color once floods
+  // all the regions next to the flooded area, so the farthest region bounds
+  // the moves left
+  SolverResult cutShort(int[] moves) {
+    return new SolverResult(moves, moves.length + this.maxDistance() * (this.numColor - 1), 0);
+  }
+
+  // to return the fewest moves found to flood the whole board from the flooded
+  // regions of the graph, within the budget of this solver, searching every
+  // state at most once per iteration with the help of a transposition table
+  SolverResult solve() {
+    this.nodes = 0;
+    this.work = 0;
+    this.outOfBudget = false;
+    this.deadline = System.nanoTime() + this.timeBudget;
+    this.reset();
+    int[] best = this.greedy(this.deadline);
+    if (this.colorsLeft > 0) {
+      return this.cutShort(best);
+    }
+    this.reset();
+
+    long start = System.nanoTime();
+    int bound = Math.max(this.colorsLeft, this.maxDistance());
+    // reaching a first solution takes at least one distance search per move,
+    // so a graph too large to get there in time keeps the greedy moves
+    if ((System.nanoTime() - start) * bound > this.deadline - System.nanoTime()
+        || Thread.currentThread().isInterrupted()) {
+      this.outOfBudget = true;
+    }
+    if (this.table == null) {
+      this.table = new TranspositionTable(1 << 18);
+    }
+    while (bound < best.length && !this.outOfBudget) {
+      this.table.clear();
+      int next = this.search(0, bound);
+      if (next == -1) {
+        return new SolverResult(Arrays.copyOf(this.path, this.solutionLength), true, this.nodes);
+      }
+      bound = next;
+    }
+    return new SolverResult(best, !this.outOfBudget, this.nodes);
+  }
+}
+
+// to represent a transposition table shared by the threads of a parallel
+// search: every slot packs the tag of a state hash with the fewest moves that
+// reached the state into one long, updated lock-free with compare-and-set
+class SharedTable {
+  AtomicLongArray slots;
+  int mask;
+
+  // the number of slots is rounded up to a power of two
+  SharedTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.slots = new AtomicLongArray(size);
+    this.mask = size - 1;
+  }
+
+  // EFFECT: to record that the state with the given hash was reached after the
+  // given number of moves, and return false if it was already reached in as few
+  // moves, so that it does not need to be searched again
+  boolean visit(long hash, int moves) {
+    int slot = (int) hash & this.mask;
+    // the low 16 bits hold the moves, so a slot is never 0 once written
+    long entry = (hash & 0xFFFFFFFFFFFF0000L) | 0x8000L | moves;
+    while (true) {
+      long old = this.slots.get(slot);
+      if (old != 0 && (old & 0xFFFFFFFFFFFF0000L) == (hash & 0xFFFFFFFFFFFF0000L)
+          && (old & 0x7FFFL) <= moves) {
+        return false;
+      }
+      if (this.slots.compareAndSet(slot, old, entry)) {
+        return true;
+      }
+    }
+  }
+}
+
+// to represent a branch-and-bound search of a board split into fork-join tasks
+// over the moves near the root: idle threads steal subtrees, the threads share
+// the best solution found so far to prune with, and share a transposition
+// table so that no thread searches a state already reached in as few moves
+class ParallelFloodItSolver {
+  RegionGraph graph;
+  int numColor;
+  long nodeBudget;
+  // the time budget in nanoseconds
+  long timeBudget;
+  int parallelism;
+  // the depth down to which every move is forked as its own task
+  int splitDepth;
+  SharedTable table;
+  // the fewest moves found so far, and their colors
+  AtomicInteger best;
+  int[] bestMoves;
+  AtomicLong nodes;
+  long deadline;
+  volatile boolean outOfBudget;
+
+  ParallelFloodItSolver(RegionGraph graph, int numColor, long nodeBudget, long timeBudgetMillis,
+      int parallelism) {
+    this.graph = graph;
+    this.numColor = numColor;
+    this.nodeBudget = nodeBudget;
+    this.timeBudget = timeBudgetMillis * 1000000L;
+    this.parallelism = parallelism;
+    this.splitDepth = 3;
+    this.table = new SharedTable(1 << 22);
+  }
+
+  // to return the fewest moves found to flood the whole board from the flooded
+  // regions of the graph, searching on the given number of threads
+  SolverResult solve() {
+    this.deadline = System.nanoTime() + this.timeBudget;
+    FloodItSolver root = new FloodItSolver(this.graph, this.numColor, this.nodeBudget, 0);
+    root.reset();
+    this.bestMoves = root.greedy(this.deadline);
+    if (root.colorsLeft > 0) {
+      return root.cutShort(this.bestMoves);
+    }
+    this.best = new AtomicInteger(this.bestMoves.length);
+    this.nodes = new AtomicLong();
+    this.outOfBudget = false;
+    root.reset();
+
+    ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+    try {
+      pool.invoke(new SolverTask(this, root, 0));
+    }
+    finally {
+      pool.shutdown();
+    }
+    return new SolverResult(this.bestMoves, !this.outOfBudget, this.nodes.get());
+  }
+
+  // EFFECT: to keep the given moves if they are fewer than the best so far
+  synchronized void offer(int[] path, int moves) {
+    if (moves < this.best.get()) {
+      this.bestMoves = Arrays.copyOf(path, moves);
+      this.best.set(moves);
+    }
+  }
+
+  // EFFECT: to count the given number of search nodes, and run out of budget
+  // once the node or the time budget is spent
+  void charge(long count) {
+    if (this.nodes.addAndGet(count) >= this.nodeBudget || System.nanoTime() > this.deadline) {
+      this.outOfBudget = true;
+    }
+  }
+}
+
+// to represent the search of the subtree below one search state of a
+// ParallelFloodItSolver, which owns its own copy of the state
+class SolverTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  ParallelFloodItSolver owner;
+  FloodItSolver state;
+  int moves;
+  // the nodes searched by this task that are not yet charged to the owner
+  int pending;
+
+  SolverTask(ParallelFloodItSolver owner, FloodItSolver state, int moves) {
+    this.owner = owner;
+    this.state = state;
+    this.moves = moves;
+    this.pending = 0;
+  }
+
+  // EFFECT: to search the subtree of this task
+  protected void compute() {
+    this.search(this.moves);
+    this.owner.charge(this.pending);
+  }
+
+  // EFFECT: to count a search node, charging the owner in batches so that the
+  // threads rarely contend on the shared counter, and return false once the
+  // budget is spent
+  boolean spend() {
+    this.pending = this.pending + 1;
+    if (this.pending == 256) {
+      this.owner.charge(this.pending);
+      this.pending = 0;
+    }
+    return !this.owner.outOfBudget;
+  }
+
+  // EFFECT: to search the moves after the given number of moves, offering every
+  // solution shorter than the best one to the owner
+  void search(int moves) {
+    FloodItSolver state = this.state;
+    if (!this.spend()) {
+      return;
+    }
+    if (state.colorsLeft == 0) {
+      this.owner.offer(state.path, moves);
+      return;
+    }
+    if (moves + state.colorsLeft >= this.owner.best.get()
+        || moves + state.maxDistance() >= this.owner.best.get()
+        || !this.owner.table.visit(state.hash, moves)) {
+      return;
+    }
+
+    int only = state.eliminatingColor();
+    int[] order = state.movesByGain();
+    if (moves < this.owner.splitDepth && only == -1) {
+      ArrayList<SolverTask> tasks = new ArrayList<SolverTask>();
+      for (int i = 0; i < order.length; i = i + 1) {
+        FloodItSolver child = new FloodItSolver(state);
+        child.apply(order[i], moves);
+        child.path[moves] = order[i];
+        tasks.add(new SolverTask(this.owner, child, moves + 1));
+      }
+      ForkJoinTask.invokeAll(tasks);
+    }
+    else {
+      for (int i = 0; i < order.length; i = i + 1) {
+        if (only == -1 || only == order[i]) {
+          state.apply(order[i], moves);
+          state.path[moves] = order[i];
+          this.search(moves + 1);
+          state.undo(order[i], moves);
+        }
+      }
+    }
+  }
+}
+
+// to represent a first-in first-out queue of cell indices, stored in a ring
+// buffer that doubles when it is full
+class IntQueue {
+  int[] items;
+  // the position of the first item in the ring buffer
+  int head;
+  int size;
+
+  IntQueue() {
+    this.items = new int[16];
+    this.head = 0;
+    this.size = 0;
+  }
+
+  // to return the number of items in this queue
+  int size() {
+    return this.size;
+  }
+
+  // to check if this queue has no items
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // EFFECT: to add the given item to the end of this queue
+  void add(int item) {
+    if (this.size == this.items.length) {
+      int[] items = new int[this.items.length * 2];
+      for (int i = 0; i < this.size; i = i + 1) {
+        items[i] = this.get(i);
+      }
+      this.items = items;
+      this.head = 0;
+    }
+    this.items[(this.head + this.size) % this.items.length] = item;
+    this.size = this.size + 1;
+  }
+
+  // to return the item at the given position from the front of this queue
+  int get(int i) {
+    return this.items[(this.head + i) % this.items.length];
+  }
+
+  // EFFECT: to remove and return the first item of this queue
+  int remove() {
+    if (this.size == 0) {
+      throw new IllegalStateException("The queue is empty");
+    }
+    int item = this.items[this.head];
+    this.head = (this.head + 1) % this.items.length;
+    this.size = this.size - 1;
+    return item;
+  }
+
+  // EFFECT: to remove all the items of this queue
+  void clear() {
+    this.head = 0;
+    this.size = 0;
+  }
+
+  // to return the items of this queue from front to back
+  int[] toArray() {
+    int[] items = new int[this.size];
+    for (int i = 0; i < this.size; i = i + 1) {
+      items[i] = this.get(i);
+    }
+    return items;
+  }
+}
+
+// to represent what one move of a game changed, so that it can be taken back
+// in time and memory proportional to the cells it flooded instead of the area
+// of the board: the cells and regions it flooded, the frontier of its color
+// it flooded them from, and the sizes of the frontier buckets before it
+class MoveDelta {
+  int color;
+  // the color of the flooded area before the move
+  int previousColor;
+  // the cells flooded by the move, and the frontier of its color before it
+  int[] cells;
+  int[] seeds;
+  int[] frontierSizes;
+  // the regions absorbed by the move, which were the frontier of its color
+  int[] regions;
+  int[] regionFrontierSizes;
+
+  // to record the state of the given game before it floods the given color
+  MoveDelta(FloodItGame game, int color) {
+    this.color = color;
+    this.previousColor = game.floodColor;
+    this.cells = null;
+    this.seeds = Arrays.copyOf(game.board.frontier[color], game.board.frontierSize[color]);
+    this.frontierSizes = game.board.frontierSize.clone();
+    this.regions = Arrays.copyOf(game.regions.frontier[color], game.regions.frontierSize[color]);
+    this.regionFrontierSizes = game.regions.frontierSize.clone();
+  }
+
+  // EFFECT: to record the cells the flood of the move flooded in the given board
+  void flooded(FloodItBoard board) {
+    this.cells = Arrays.copyOf(board.queue, board.queueSize);
+  }
+}
+
+// to represent the state and rules of one game of Flood It without any
+// drawing, so that games can be created, played, queried and undone headlessly
+class FloodItGame {
+  FloodItBoard board;
+  // the regions of the board, merged as the flooded area grows
+  RegionGraph regions;
+  // the engine that floods the cells of the board
+  IFloodEngine engine;
+  int numColor;
+  // the palette index of the color of the flooded area, or -1 before the start
+  int floodColor;
+  int clicks;
+  int maxClicks;
+  // the solution of the board found by the solver when maxClicks was derived
+  SolverResult solution;
+  // the colors picked by the moves, and what each of them changed
+  int[] moves;
+  MoveDelta[] history;
+  int moveCount;
+  // the colors of the moves taken back by undo, the last one on top
+  int[] redoMoves;
+  int redoCount;
+
+  // the constructor: the game is not started until start is called
+  FloodItGame(FloodItBoard board, int numColor) {
+    this.board = board;
+    this.regions = null;
+    this.engine = new FrontierFloodEngine();
+    this.numColor = numColor;
+    this.floodColor = -1;
+    this.clicks = 0;
+    this.maxClicks = 0;
+    this.solution = null;
+    this.moves = new int[16];
+    this.history = new MoveDelta[16];
+    this.moveCount = 0;
+    this.redoMoves = new int[16];
+    this.redoCount = 0;
+  }
+
+  // to return the default palette of the game
+  static ArrayList<Color> defaultColors() {
+    return new ArrayList<Color>(Arrays.asList(Color.RED, Color.YELLOW, Color.GREEN, Color.ORANGE,
+        Color.BLACK, Color.CYAN, Color.BLUE, Color.PINK));
+  }
+
+  // to create a board of the given size with cells of random colors among the
+  // first numColor colors of the given palette
+  static FloodItBoard createBoard(int size, int numColor, Random rand,
+      ArrayList<Color> palette) {
+    return FloodItGame.createBoard(new GridTopology(size, size), numColor, rand, palette);
+  }
+
+  // to create a board of the given topology with cells of random colors among
+  // the first numColor colors of the given palette, drawn row by row
+  static FloodItBoard createBoard(ITopology topology, int numColor, Random rand,
+      ArrayList<Color> palette) {
+    FloodItBoard board = new FloodItBoard(topology, palette);
+
+    for (int index = 0; index < board.area(); index = index + 1) {
+      board.colors[index] = (byte) rand.nextInt(numColor);
+    }
+    board.countColors();
+    return board;
+  }
+
+  // to create a board of the given size with cells of random colors among the
+  // first numColor colors of the given palette, drawn in parallel from
+  // SplittableRandoms split from one of the given seed. The rows are split in
+  // the same halves whatever the threads, so the board only depends on the seed
+  static FloodItBoard generateBoard(int size, int numColor, long seed,
+      ArrayList<Color> palette) {
+    FloodItBoard board = new FloodItBoard(size, palette);
+    ForkJoinPool.commonPool().invoke(new RowTask(board, numColor,
+        new SplittableRandom(seed), 0, size));
+    board.countColors();
+    return board;
+  }
+
+  // EFFECT: to flood the board with the given engine from the start of the game
+  void useEngine(IFloodEngine engine) {
+    if (this.floodColor != -1) {
+      throw new IllegalStateException("The game has already started");
+    }
+    this.engine = engine;
+  }
+
+  // EFFECT: updates the upper left cell of the board and also the adjacent cells
+  // with the same color to be flooded
+  void start() {
+    this.regions = new RegionGraph(this.board);
+    this.regions.floodStart();
+    this.engine.start(this.board);
+    this.floodColor = this.board.colorAt(0);
+  }
+
+  // to calculate the max clicks based on the size and number of color, for
+  // games that do not derive them with the solver
+  static int calMaxClicks(int size, int numColor) {
+    if (numColor % 2 != 0) {
+      return (size / 2) * ((numColor + 1) / 2);
+    }
+    else {
+      return (size / 2) * (numColor / 2 + 1);
+    }
+  }
+
+  // EFFECT: to solve the board from its flooded area within a small budget and
+  // allow as many more clicks as the solution needs
+  void deriveMaxClicks() {
+    this.solution = new FloodItSolver(this.regions, this.numColor, 2000000, 250).solve();
+    this.maxClicks = this.clicks + this.solution.clicks();
+  }
+
+  // EFFECT: to pick the color of the cell at the given index if it is unflooded
+  // and has a different color than the flooded area, and return whether it did
+  boolean click(int index) {
+    return !this.board.isFlooded(index) && this.move(this.board.colorAt(index));
+  }
+
+  // EFFECT: to pick the given color, flooding the cells of that color connected
+  // to the flooded area, if it is not the color of the flooded area and there
+  // are unflooded cells of that color left, and return whether it did. The
+  // moves taken back by undo can no longer be redone after a new move
+  boolean move(int color) {
+    if (this.play(color)) {
+      this.redoCount = 0;
+      return true;
+    }
+    else {
+      return false;
+    }
+  }
+
+  // EFFECT: to pick the given color as move does, recording what the move
+  // changed, and return whether it did
+  boolean play(int color) {
+    if (color == this.floodColor || this.board.remaining(color) == 0) {
+      return false;
+    }
+    else {
+      MoveDelta delta = new MoveDelta(this, color);
+      this.floodedAdjSameColor(color);
+      delta.flooded(this.board);
+      if (this.moveCount == this.moves.length) {
+        this.moves = Arrays.copyOf(this.moves, this.moveCount * 2);
+        this.history = Arrays.copyOf(this.history, this.moveCount * 2);
+      }
+      this.moves[this.moveCount] = color;
+      this.history[this.moveCount] = delta;
+      this.moveCount = this.moveCount + 1;
+      this.clicks = this.clicks + 1;
+      return true;
+    }
+  }
+
+  // EFFECT: to update the unflooded cells which are connected to the flooded
+  // ones through cells of the given color, expanding only from the frontier of
+  // the flooded area
+  void floodedAdjSameColor(int color) {
+    long start = Metrics.start();
+    this.floodColor = color;
+    this.engine.flood(this.board, color);
+    int cells = this.regions.flood(color);
+    if (Metrics.ENABLED) {
+      Metrics.FLOODED_CELLS.add(cells);
+    }
+    Metrics.FLOOD.stop(start);
+  }
+
+  // to return what the last move changed, or null if there is none
+  MoveDelta lastMove() {
+    if (this.moveCount == 0) {
+      return null;
+    }
+    else {
+      return this.history[this.moveCount - 1];
+    }
+  }
+
+  // EFFECT: to take back the last move, if there is one, from what it changed,
+  // and return whether it did
+  boolean undo() {
+    if (this.moveCount == 0) {
+      return false;
+    }
+    else {
+      this.moveCount = this.moveCount - 1;
+      this.clicks = this.clicks - 1;
+      MoveDelta delta = this.history[this.moveCount];
+      this.history[this.moveCount] = null;
+      this.engine.undo(this.board, delta);
+      this.regions.undo(delta);
+      this.floodColor = delta.previousColor;
+      if (this.redoCount == this.redoMoves.length) {
+        this.redoMoves = Arrays.copyOf(this.redoMoves, this.redoCount * 2);
+      }
+      this.redoMoves[this.redoCount] = delta.color;
+      this.redoCount = this.redoCount + 1;
+      return true;
+    }
+  }
+
+  // EFFECT: to make the last move taken back by undo again, if there is one,
+  // and return whether it did
+  boolean redo() {
+    if (this.redoCount == 0) {
+      return false;
+    }
+    else {
+      this.redoCount = this.redoCount - 1;
+      return this.play(this.redoMoves[this.redoCount]);
+    }
+  }
+
+  // to check if the whole board is flooded, using the running count of flooded
+  // cells kept by the board
+  boolean allFlooded() {
+    long start = Metrics.start();
+    boolean flooded = this.board.allFlooded();
+    Metrics.ALL_FLOODED.stop(start);
+    return flooded;
+  }
+
+  // to check if the player flooded the board within maxClicks
+  boolean isWon() {
+    return this.allFlooded() && this.clicks <= this.maxClicks;
+  }
+
+  // to check if the player used up maxClicks without flooding the board
+  boolean isLost() {
+    return !this.allFlooded() && this.clicks >= this.maxClicks;
+  }
+
+  // to return the number of unflooded cells of the given palette index
+  int remaining(int color) {
+    return this.board.remaining(color);
+  }
+
+  // to return the Zobrist hash of the flooded area and its color, which is the
+  // same for every order of moves that leads to the same state
+  long stateHash() {
+    return this.regions.hash;
+  }
+}
+
+// to represent a snapshot of a game in a compact binary format: a header with
+// the size, number of colors, flood color, clicks, maxClicks and time, then
+// the colors of the cells packed at 3 bits per cell, then the flooded cells
+// as a bit set. Snapshots are written one after another to a channel, and can
+// be read back from a channel or from a memory-mapped file
+class BoardSnapshot {
+  // "FLOD" in ASCII, to recognize snapshot files
+  static final int MAGIC = 0x464C4F44;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 24;
+  // the biggest size of the board of a snapshot, so that the number of bytes
+  // of its colors fits in an int
+  static final int MAX_SIZE = 16384;
+  int size;
+  int numColor;
+  // the palette index of the color of the flooded area, or -1 before the start
+  int floodColor;
+  int clicks;
+  int maxClicks;
+  int time;
+  byte[] colors;
+  BitSet flooded;
+
+  BoardSnapshot(int size, int numColor, int floodColor, int clicks, int maxClicks, int time,
+      byte[] colors, BitSet flooded) {
+    this.size = size;
+    this.numColor = numColor;
+    this.floodColor = floodColor;
+    this.clicks = clicks;
+    this.maxClicks = maxClicks;
+    this.time = time;
+    this.colors = colors;
+    this.flooded = flooded;
+  }
+
+  // to return a snapshot of the given game at the given time, which must be
+  // played on a square grid, the only boards the format describes
+  static BoardSnapshot of(FloodItGame game, int time) {
+    if (!game.board.topology.isGrid() || game.board.area() != game.board.size * game.board.size) {
+      throw new IllegalArgumentException("Only games on square grids can be saved");
+    }
+    return new BoardSnapshot(game.board.size, game.numColor, game.floodColor, game.clicks,
+        game.maxClicks, time, game.board.colors.clone(), (BitSet) game.board.flooded.clone());
+  }
+
+  // to return the number of cells of the board of the given size read from a
+  // snapshot, rejecting the sizes no board has before anything is allocated
+  static int area(int size) {
+    if (size < 1 || size > MAX_SIZE) {
+      throw new IllegalArgumentException("Invalid snapshot board size " + size);
+    }
+    return size * size;
+  }
+
+  // to return the number of bytes of the packed colors of a board of the given
+  // area
+  static int colorBytes(int area) {
+    return (area * 3 + 7) / 8;
+  }
+
+  // to return the number of bytes of the flooded cells of a board of the given
+  // area
+  static int floodedBytes(int area) {
+    return (area + 7) / 8;
+  }
+
+  // to return the number of bytes of this snapshot
+  int bytes() {
+    int area = this.size * this.size;
+    return HEADER_BYTES + colorBytes(area) + floodedBytes(area);
+  }
+
+  // EFFECT: to write this snapshot into the given buffer at its position
+  void writeTo(ByteBuffer buffer) {
+    buffer.putInt(MAGIC);
+    buffer.put((byte) VERSION);
+    buffer.put((byte) this.numColor);
+    buffer.put((byte) this.floodColor);
+    buffer.put((byte) 0);
+    buffer.putInt(this.size);
+    buffer.putInt(this.clicks);
+    buffer.putInt(this.maxClicks);
+    buffer.putInt(this.time);
+
+    // the colors are packed from the lowest bit of each byte up, and a color
+    // can be split between two bytes
+    int area = this.size * this.size;
+    int bits = 0;
+    int pending = 0;
+    for (int index = 0; index < area; index = index + 1) {
+      bits = bits | (this.colors[index] << pending);
+      pending = pending + 3;
+      if (pending >= 8) {
+        buffer.put((byte) bits);
+        bits = bits >>> 8;
+        pending = pending - 8;
+      }
+    }
+    if (pending > 0) {
+      buffer.put((byte) bits);
+    }
+
+    byte[] flooded = this.flooded.toByteArray();
+    buffer.put(flooded);
+    for (int i = flooded.length; i < floodedBytes(area); i = i + 1) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  // to read the snapshot at the position of the given buffer, leaving the
+  // position after it
+  static BoardSnapshot readFrom(ByteBuffer buffer) {
+    if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a Flood It snapshot");
+    }
+    else if (buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Unknown snapshot version");
+    }
+    int numColor = buffer.get();
+    int floodColor = buffer.get();
+    buffer.get();
+    int size = buffer.getInt();
+    int clicks = buffer.getInt();
+    int maxClicks = buffer.getInt();
+    int time = buffer.getInt();
+    if (numColor < 1 || numColor > 8 || floodColor < -1 || floodColor >= numColor) {
+      throw new IllegalArgumentException("Invalid snapshot colors");
+    }
+
+    int area = BoardSnapshot.area(size);
+    if (buffer.remaining() < colorBytes(area) + floodedBytes(area)) {
+      throw new IllegalArgumentException("The snapshot is cut short");
+    }
+    byte[] colors = new byte[area];
+    int bits = 0;
+    int pending = 0;
+    for (int index = 0; index < area; index = index + 1) {
+      if (pending < 3) {
+        bits = bits | ((buffer.get() & 0xFF) << pending);
+        pending = pending + 8;
+      }
+      colors[index] = (byte) (bits & 7);
+      bits = bits >>> 3;
+      pending = pending - 3;
+    }
+
+    ByteBuffer flooded = buffer.slice();
+    flooded.limit(floodedBytes(area));
+    buffer.position(buffer.position() + floodedBytes(area));
+    return new BoardSnapshot(size, numColor, floodColor, clicks, maxClicks, time, colors,
+        BitSet.valueOf(flooded));
+  }
+
+  // EFFECT: to write this snapshot to the given channel
+  void write(WritableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(this.bytes());
+    this.writeTo(buffer);
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  // to read the next snapshot from the given channel
+  static BoardSnapshot read(ReadableByteChannel channel) throws IOException {
+    ByteBuffer header = BoardSnapshot.readFully(channel, HEADER_BYTES);
+    int area = BoardSnapshot.area(header.getInt(8));
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + colorBytes(area) + floodedBytes(area));
+    buffer.put(header);
+    buffer.put(BoardSnapshot.readFully(channel, buffer.remaining()));
+    buffer.flip();
+    return BoardSnapshot.readFrom(buffer);
+  }
+
+  // to read exactly the given number of bytes from the given channel
+  static ByteBuffer readFully(ReadableByteChannel channel, int bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(bytes);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new EOFException("The snapshot is cut short");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  // EFFECT: to write the given snapshots one after another to the file at the
+  // given path, replacing it
+  static void save(Path path, ArrayList<BoardSnapshot> snapshots) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (BoardSnapshot snapshot : snapshots) {
+        snapshot.write(channel);
+      }
+    }
+  }
+
+  // to map the file at the given path into memory, so that its snapshots can
+  // be read with readFrom without copying the file
+  static MappedByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  // to return all the snapshots of the file at the given path
+  static ArrayList<BoardSnapshot> load(Path path) throws IOException {
+    MappedByteBuffer buffer = BoardSnapshot.map(path);
+    ArrayList<BoardSnapshot> snapshots = new ArrayList<BoardSnapshot>();
+    while (buffer.hasRemaining()) {
+      snapshots.add(BoardSnapshot.readFrom(buffer));
+    }
+    return snapshots;
+  }
+
+  // to return the game of this snapshot with the given palette: the flooded
+  // cells take the flood color, as they would when the color wave ends, and
+  // the game is started so that they are flooded again
+  FloodItGame toGame(ArrayList<Color> palette) {
+    FloodItBoard board = new FloodItBoard(this.size, this.colors, palette);
+    for (int index = this.flooded.nextSetBit(0); index >= 0;
+        index = this.flooded.nextSetBit(index + 1)) {
+      board.updateColor(index, this.floodColor);
+    }
+    FloodItGame game = new FloodItGame(board, this.numColor);
+    if (this.floodColor >= 0) {
+      game.start();
+    }
+    game.clicks = this.clicks;
+    game.maxClicks = this.maxClicks;
+    return game;
+  }
+}
+
+// to represent a file of pre-generated boards mapped into memory: a header,
+// an index of the boards sorted by size, number of colors and seed, and the
+// colors of every board, one byte per cell. The boards are the same as the
+// ones of FloodItWorld(size, numColor, seed), so loading one is a lookup in
+// the index and a bulk copy instead of drawing every cell from a Random
+class BoardCorpus {
+  // "FLCP" in ASCII, to recognize corpus files
+  static final int MAGIC = 0x464C4350;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  // the size, number of colors, seed, padding and offset of the colors of a
+  // board in the index
+  static final int ENTRY_BYTES = 24;
+  MappedByteBuffer buffer;
+  // the number of boards in the corpus
+  int count;
+
+  BoardCorpus(MappedByteBuffer buffer) {
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("Not a Flood It corpus");
+    }
+    else if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unknown corpus version");
+    }
+    else {
+      this.buffer = buffer;
+      this.count = buffer.getInt(8);
+    }
+  }
+
+  // to open the corpus of the file at the given path
+  static BoardCorpus open(Path path) throws IOException {
+    return new BoardCorpus(BoardSnapshot.map(path));
+  }
+
+  // to compare the board of the given entry of the index with the board of the
+  // given size, number of colors and seed, in the order of the index
+  int compare(int entry, int size, int numColor, int seed) {
+    int position = HEADER_BYTES + entry * ENTRY_BYTES;
+    if (this.buffer.getInt(position) != size) {
+      return Integer.compare(this.buffer.getInt(position), size);
+    }
+    else if (this.buffer.getInt(position + 4) != numColor) {
+      return Integer.compare(this.buffer.getInt(position + 4), numColor);
+    }
+    else {
+      return Integer.compare(this.buffer.getInt(position + 8), seed);
+    }
+  }
+
+  // to return the entry of the index of the board of the given size, number of
+  // colors and seed, or -1 if the corpus does not have it
+  int find(int size, int numColor, int seed) {
+    int low = 0;
+    int high = this.count - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int order = this.compare(middle, size, numColor, seed);
+      if (order < 0) {
+        low = middle + 1;
+      }
+      else if (order > 0) {
+        high = middle - 1;
+      }
+      else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  // to return the board of the given size, number of colors and seed with the
+  // given palette, copying its colors out of the mapped file in one bulk get
+  FloodItBoard board(int size, int numColor, int seed, ArrayList<Color> palette) {
+    int entry = this.find(size, numColor, seed);
+    if (entry < 0) {
+      throw new IllegalArgumentException("The corpus has no board of size " + size + " with "
+          + numColor + " colors and seed " + seed);
+    }
+    else {
+      FloodItBoard board = new FloodItBoard(size, palette);
+      ByteBuffer colors = this.buffer.duplicate();
+      colors.position((int) this.buffer.getLong(HEADER_BYTES + entry * ENTRY_BYTES + 16));
+      colors.get(board.colors);
+      board.countColors();
+      return board;
+    }
+  }
+
+  // EFFECT: to write the corpus of the boards of every given size and number of
+  // colors for the seeds from firstSeed to firstSeed + seeds - 1 to the file at
+  // the given path, generating the boards in parallel straight into the mapped
+  // file
+  static void generate(Path path, int[] sizes, int[] colors, int firstSeed, int seeds,
+      int parallelism) throws IOException {
+    int[] sortedSizes = sizes.clone();
+    int[] sortedColors = colors.clone();
+    Arrays.sort(sortedSizes);
+    Arrays.sort(sortedColors);
+    int count = sortedSizes.length * sortedColors.length * seeds;
+
+    CorpusTask task = new CorpusTask(null, new int[count], new int[count], new int[count],
+        new long[count], 0, count);
+    long offset = HEADER_BYTES + (long) count * ENTRY_BYTES;
+    int entry = 0;
+    for (int size : sortedSizes) {
+      for (int numColor : sortedColors) {
+        for (int seed = firstSeed; seed < firstSeed + seeds; seed = seed + 1) {
+          task.sizes[entry] = size;
+          task.numColors[entry] = numColor;
+          task.seeds[entry] = seed;
+          task.offsets[entry] = offset;
+          offset = offset + (long) size * size;
+          entry = entry + 1;
+        }
+      }
+    }
+    if (offset > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("The corpus is too big to map");
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      task.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, offset);
+      task.buffer.putInt(MAGIC);
+      task.buffer.putInt(VERSION);
+      task.buffer.putInt(count);
+      task.buffer.putInt(0);
+      for (int i = 0; i < count; i = i + 1) {
+        task.buffer.putInt(task.sizes[i]);
+        task.buffer.putInt(task.numColors[i]);
+        task.buffer.putInt(task.seeds[i]);
+        task.buffer.putInt(0);
+        task.buffer.putLong(task.offsets[i]);
+      }
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(task);
+      }
+      finally {
+        pool.shutdown();
+      }
+      task.buffer.force();
+    }
+  }
+}
+
+// to represent the generation of a range of the boards of a corpus into the
+// mapped corpus file, split in halves until a range holds one board
+class CorpusTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  MappedByteBuffer buffer;
+  int[] sizes;
+  int[] numColors;
+  int[] seeds;
+  // the positions of the colors of the boards in the file
+  long[] offsets;
+  int from;
+  int to;
+
+  CorpusTask(MappedByteBuffer buffer, int[] sizes, int[] numColors, int[] seeds,
+      long[] offsets, int from, int to) {
+    this.buffer = buffer;
+    this.sizes = sizes;
+    this.numColors = numColors;
+    this.seeds = seeds;
+    this.offsets = offsets;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: to generate the boards of this range, drawing the colors of every
+  // board row by row from a Random of its seed, as FloodItWorld does
+  protected void compute() {
+    if (this.to - this.from > 1) {
+      int middle = (this.from + this.to) >>> 1;
+      ForkJoinTask.invokeAll(
+          new CorpusTask(this.buffer, this.sizes, this.numColors, this.seeds, this.offsets,
+              this.from, middle),
+          new CorpusTask(this.buffer, this.sizes, this.numColors, this.seeds, this.offsets,
+              middle, this.to));
+    }
+    else if (this.to - this.from == 1) {
+      int size = this.sizes[this.from];
+      Random rand = new Random(this.seeds[this.from]);
+      ByteBuffer colors = this.buffer.duplicate();
+      colors.position((int) this.offsets[this.from]);
+      byte[] row = new byte[size];
+      for (int r = 0; r < size; r = r + 1) {
+        for (int c = 0; c < size; c = c + 1) {
+          row[c] = (byte) rand.nextInt(this.numColors[this.from]);
+        }
+        colors.put(row);
+      }
+    }
+  }
+}
+
+// to represent the drawing of the colors of a range of rows of a board, split
+// in halves, each with its own SplittableRandom, until a range holds about
+// BATCH cells
+class RowTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  // the number of cells a task draws without splitting
+  static final int BATCH = 1 << 16;
+  FloodItBoard board;
+  int numColor;
+  SplittableRandom rand;
+  int from;
+  int to;
+
+  RowTask(FloodItBoard board, int numColor, SplittableRandom rand, int from, int to) {
+    this.board = board;
+    this.numColor = numColor;
+    this.rand = rand;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: to draw the colors of the rows of this range. The first half is
+  // drawn from a SplittableRandom split from the one of the range, so that the
+  // halves draw from independent streams
+  protected void compute() {
+    if (this.to - this.from > 1 && (this.to - this.from) * this.board.size > BATCH) {
+      int middle = (this.from + this.to) >>> 1;
+      ForkJoinTask.invokeAll(
+          new RowTask(this.board, this.numColor, this.rand.split(), this.from, middle),
+          new RowTask(this.board, this.numColor, this.rand, middle, this.to));
+    }
+    else {
+      this.draw(this.board.index(this.from, 0), this.board.index(this.to, 0));
+    }
+  }
+
+  // EFFECT: to draw the colors of the cells from the given index up to the
+  // given end, 4 cells per random long: each 16 bits of it are scaled to a
+  // color by a multiplication instead of a division, so a color is off from
+  // uniform by less than numColor / 65536
+  void draw(int start, int end) {
+    byte[] colors = this.board.colors;
+    int index = start;
+    while (index < end) {
+      long bits = this.rand.nextLong();
+      int last = Math.min(end, index + 4);
+      while (index < last) {
+        colors[index] = (byte) (((bits & 0xFFFF) * this.numColor) >>> 16);
+        bits = bits >>> 16;
+        index = index + 1;
+      }
+    }
+  }
+}
+
+// to represent the append-only log of one game: the generator and seed of its
+// board, its size, number of colors, maxClicks and wave speed, then an entry
+// per move with the tick it was made at and the color picked, and an entry
+// that ends the log with the tick and the result of the game. Appended
+// entries can be streamed straight to a channel
+class MoveLog {
+  // "FLML" in ASCII, to recognize move logs
+  static final int MAGIC = 0x464C4D4C;
+  static final int VERSION = 1;
+  // the generator that draws the colors of a board row by row from a
+  // java.util.Random of the seed, as FloodItWorld does
+  static final int RANDOM_GENERATOR = 0;
+  // the generator that draws the colors of a board in parallel from
+  // SplittableRandoms split from one of the seed, as FloodItGame.generateBoard
+  // does
+  static final int SPLITTABLE_GENERATOR = 1;
+  static final int HEADER_BYTES = 32;
+  static final int ENTRY_BYTES = 8;
+  // the color of the entry that ends a log, and of the entry of an undo
+  static final int END = -1;
+  static final int UNDO = -2;
+  // the results of a game
+  static final int PLAYING = 0;
+  static final int WON = 1;
+  static final int LOST = 2;
+  int generator;
+  long seed;
+  int size;
+  int numColor;
+  int maxClicks;
+  // the number of cells the wave recolors per tick, or 0 if it recolors a
+  // diagonal per tick
+  int waveBatch;
+  // the ticks and colors of the moves
+  int[] ticks;
+  byte[] colors;
+  int count;
+  int result;
+  // the tick the game ended at, or -1 while it is played
+  int endTick;
+  // the channel the entries are streamed to, or null
+  WritableByteChannel out;
+
+  MoveLog(int generator, long seed, int size, int numColor, int maxClicks, int waveBatch) {
+    this.generator = generator;
+    this.seed = seed;
+    this.size = size;
+    this.numColor = numColor;
+    this.maxClicks = maxClicks;
+    this.waveBatch = waveBatch;
+    this.ticks = new int[16];
+    this.colors = new byte[16];
+    this.count = 0;
+    this.result = PLAYING;
+    this.endTick = -1;
+    this.out = null;
+  }
+
+  // EFFECT: to add the move of the given color made at the given tick
+  void append(int tick, int color) {
+    if (this.endTick >= 0) {
+      throw new IllegalStateException("The game of the log has ended");
+    }
+    else {
+      if (this.count == this.ticks.length) {
+        this.ticks = Arrays.copyOf(this.ticks, this.count * 2);
+        this.colors = Arrays.copyOf(this.colors, this.count * 2);
+      }
+      this.ticks[this.count] = tick;
+      this.colors[this.count] = (byte) color;
+      this.count = this.count + 1;
+      this.stream(tick, color, PLAYING);
+    }
+  }
+
+  // EFFECT: to end the log with the given result at the given tick
+  void end(int tick, int result) {
+    if (this.endTick >= 0) {
+      throw new IllegalStateException("The game of the log has ended");
+    }
+    else {
+      this.endTick = tick;
+      this.result = result;
+      this.stream(tick, END, result);
+    }
+  }
+
+  // to return the number of bytes of this log
+  int bytes() {
+    if (this.endTick >= 0) {
+      return HEADER_BYTES + (this.count + 1) * ENTRY_BYTES;
+    }
+    else {
+      return HEADER_BYTES + this.count * ENTRY_BYTES;
+    }
+  }
+
+  // EFFECT: to write the header of this log into the given buffer
+  void writeHeader(ByteBuffer buffer) {
+    buffer.putInt(MAGIC);
+    buffer.put((byte) VERSION);
+    buffer.put((byte) this.generator);
+    buffer.putShort((short) 0);
+    buffer.putLong(this.seed);
+    buffer.putInt(this.size);
+    buffer.putInt(this.numColor);
+    buffer.putInt(this.maxClicks);
+    buffer.putInt(this.waveBatch);
+  }
+
+  // EFFECT: to write the entry of the given tick, color and result into the
+  // given buffer
+  static void writeEntry(ByteBuffer buffer, int tick, int color, int result) {
+    buffer.putInt(tick);
+    buffer.put((byte) color);
+    buffer.put((byte) result);
+    buffer.putShort((short) 0);
+  }
+
+  // EFFECT: to write this log into the given buffer at its position
+  void writeTo(ByteBuffer buffer) {
+    this.writeHeader(buffer);
+    for (int i = 0; i < this.count; i = i + 1) {
+      MoveLog.writeEntry(buffer, this.ticks[i], this.colors[i], PLAYING);
+    }
+    if (this.endTick >= 0) {
+      MoveLog.writeEntry(buffer, this.endTick, END, this.result);
+    }
+  }
+
+  // to read the log at the position of the given buffer, up to the entry that
+  // ends it or the end of the buffer, leaving the position after it
+  static MoveLog readFrom(ByteBuffer buffer) {
+    if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a Flood It move log");
+    }
+    else if (buffer.get() != VERSION) {
+      throw new IllegalArgumentException("Unknown move log version");
+    }
+    int generator = buffer.get();
+    buffer.getShort();
+    MoveLog log = new MoveLog(generator, buffer.getLong(), buffer.getInt(), buffer.getInt(),
+        buffer.getInt(), buffer.getInt());
+    while (log.endTick < 0 && buffer.remaining() >= ENTRY_BYTES) {
+      int tick = buffer.getInt();
+      int color = buffer.get();
+      int result = buffer.get();
+      buffer.getShort();
+      if (color == END) {
+        log.end(tick, result);
+      }
+      else {
+        log.append(tick, color);
+      }
+    }
+    return log;
+  }
+
+  // to return all the logs of the file at the given path
+  static ArrayList<MoveLog> load(Path path) throws IOException {
+    MappedByteBuffer buffer = BoardSnapshot.map(path);
+    ArrayList<MoveLog> logs = new ArrayList<MoveLog>();
+    while (buffer.hasRemaining()) {
+      logs.add(MoveLog.readFrom(buffer));
+    }
+    return logs;
+  }
+
+  // EFFECT: to write this log to the given channel, and every entry appended
+  // from now on as soon as it is appended
+  void streamTo(WritableByteChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(this.bytes());
+    this.writeTo(buffer);
+    this.out = channel;
+    this.write(buffer);
+  }
+
+  // EFFECT: to write the entry of the given tick, color and result to the
+  // channel of this log, if it has one
+  void stream(int tick, int color, int result) {
+    if (this.out != null) {
+      ByteBuffer buffer = ByteBuffer.allocate(ENTRY_BYTES);
+      MoveLog.writeEntry(buffer, tick, color, result);
+      this.write(buffer);
+    }
+  }
+
+  // EFFECT: to write the given filled buffer to the channel of this log
+  void write(ByteBuffer buffer) {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        this.out.write(buffer);
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not write the move log", e);
+    }
+  }
+}
+
+// to represent the outcome of replaying a move log
+class ReplayResult {
+  int clicks;
+  // the result of the game, as in MoveLog
+  int result;
+  // the tick the game ends at, or -1 if it does not end
+  int endTick;
+  // whether every move was legal and the log ends as the replay does
+  boolean verified;
+
+  ReplayResult(int clicks, int result, int endTick, boolean verified) {
+    this.clicks = clicks;
+    this.result = result;
+    this.endTick = endTick;
+    this.verified = verified;
+  }
+}
+
+// to represent the replay of move logs on headless games, checking that the
+// moves are legal and that the clicks, the result and the tick each game ends
+// at match the log
+class ReplayEngine {
+  ArrayList<Color> palette;
+
+  ReplayEngine(ArrayList<Color> palette) {
+    this.palette = palette;
+  }
+
+  // to return the number of ticks the color wave of the given log takes to
+  // visit every cell once
+  static int waveTicks(MoveLog log) {
+    if (log.waveBatch == 0) {
+      return 2 * log.size - 1;
+    }
+    else {
+      return (log.size * log.size + log.waveBatch - 1) / log.waveBatch;
+    }
+  }
+
+  // to replay the given log and return its outcome
+  ReplayResult replay(MoveLog log) {
+    FloodItGame game = new FloodItGame(this.board(log), log.numColor);
+    game.start();
+    game.maxClicks = log.maxClicks;
+
+    boolean legal = true;
+    int lastTick = 0;
+    for (int i = 0; i < log.count && legal; i = i + 1) {
+      if (log.colors[i] == MoveLog.UNDO) {
+        legal = log.ticks[i] >= lastTick && game.undo();
+      }
+      else {
+        legal = log.ticks[i] >= lastTick && game.move(log.colors[i]);
+      }
+      lastTick = log.ticks[i];
+    }
+
+    int result = MoveLog.PLAYING;
+    int endTick = -1;
+    if (game.isWon()) {
+      result = MoveLog.WON;
+    }
+    else if (game.isLost()) {
+      result = MoveLog.LOST;
+    }
+    // the world ends the game on the first tick after the wave of the last move
+    if (result != MoveLog.PLAYING && log.count > 0) {
+      endTick = lastTick + ReplayEngine.waveTicks(log);
+    }
+    // the tick an unfinished game was left at is not checked
+    return new ReplayResult(game.clicks, result, endTick, legal && result == log.result
+        && (result == MoveLog.PLAYING || endTick == log.endTick));
+  }
+
+  // to return the board of the given log, drawn again from its seed with its
+  // generator
+  FloodItBoard board(MoveLog log) {
+    if (log.generator == MoveLog.RANDOM_GENERATOR) {
+      return FloodItGame.createBoard(log.size, log.numColor, new Random(log.seed),
+          this.palette);
+    }
+    else if (log.generator == MoveLog.SPLITTABLE_GENERATOR) {
+      return FloodItGame.generateBoard(log.size, log.numColor, log.seed, this.palette);
+    }
+    else {
+      throw new IllegalArgumentException("Unknown board generator " + log.generator);
+    }
+  }
+
+  // to replay the given logs in parallel and return their outcomes in order
+  ArrayList<ReplayResult> replayAll(ArrayList<MoveLog> logs, int parallelism) {
+    ReplayResult[] results = new ReplayResult[logs.size()];
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new ReplayTask(this, logs, results, 0, logs.size()));
+    }
+    finally {
+      pool.shutdown();
+    }
+    return new ArrayList<ReplayResult>(Arrays.asList(results));
+  }
+}
+
+// to represent the replay of a range of move logs, split in halves until a
+// range holds a few logs
+class ReplayTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  // the number of logs a task replays without splitting
+  static final int BATCH = 16;
+  ReplayEngine engine;
+  ArrayList<MoveLog> logs;
+  ReplayResult[] results;
+  int from;
+  int to;
+
+  ReplayTask(ReplayEngine engine, ArrayList<MoveLog> logs, ReplayResult[] results, int from,
+      int to) {
+    this.engine = engine;
+    this.logs = logs;
+    this.results = results;
+    this.from = from;
+    this.to = to;
+  }
+
+  // EFFECT: to replay the logs of this range into the results
+  protected void compute() {
+    if (this.to - this.from > BATCH) {
+      int middle = (this.from + this.to) >>> 1;
+      ForkJoinTask.invokeAll(
+          new ReplayTask(this.engine, this.logs, this.results, this.from, middle),
+          new ReplayTask(this.engine, this.logs, this.results, middle, this.to));
+    }
+    else {
+      for (int i = this.from; i < this.to; i = i + 1) {
+        this.results[i] = this.engine.replay(this.logs.get(i));
+      }
+    }
+  }
+}
+
+// to represent an automated player: given the state of a game, it picks the
+// palette index of the next color to play
+interface IMoveStrategy {
+  // to return the name of this strategy for reports
+  String name();
+
+  // to return the color of the next move in the given game, which is started
+  // and not yet flooded
+  int nextMove(FloodItGame game);
+
+  // to return a strategy of the same kind with its own scratch state, so that
+  // it can play on another thread
+  IMoveStrategy copy();
+}
+
+// to represent a strategy that picks the colors in turn, skipping the ones
+// with no unflooded cells left
+class CycleStrategy implements IMoveStrategy {
+  public String name() {
+    return "cycle";
+  }
+
+  public int nextMove(FloodItGame game) {
+    int color = (game.floodColor + 1) % game.numColor;
+    while (game.remaining(color) == 0) {
+      color = (color + 1) % game.numColor;
+    }
+    return color;
+  }
+
+  public IMoveStrategy copy() {
+    return this;
+  }
+}
+
+// to represent a strategy that picks the color flooding the most cells, read
+// straight from the frontier of the region graph of the game
+class GreedyStrategy implements IMoveStrategy {
+  public String name() {
+    return "greedy";
+  }
+
+  public int nextMove(FloodItGame game) {
+    return GreedyStrategy.mostCells(game.regions);
+  }
+
+  public IMoveStrategy copy() {
+    return this;
+  }
+
+  // to return the color that floods the most cells of the given graph, the
+  // first one of them on a tie, or -1 if its frontier is empty
+  static int mostCells(RegionGraph graph) {
+    int best = -1;
+    int bestGain = 0;
+    for (int color = 0; color < graph.frontierSize.length; color = color + 1) {
+      int gain = graph.gain(color);
+      if (gain > bestGain) {
+        best = color;
+        bestGain = gain;
+      }
+    }
+    return best;
+  }
+}
+
+// to represent a strategy that picks a color it can eliminate from the board,
+// one whose unflooded cells are all next to the flooded area, and else the
+// color flooding the most cells
+class EliminationStrategy implements IMoveStrategy {
+  public String name() {
+    return "elimination";
+  }
+
+  public int nextMove(FloodItGame game) {
+    int best = -1;
+    int bestGain = 0;
+    for (int color = 0; color < game.numColor; color = color + 1) {
+      int gain = game.regions.gain(color);
+      if (gain > bestGain && gain == game.remaining(color)) {
+        best = color;
+        bestGain = gain;
+      }
+    }
+    if (best == -1) {
+      return GreedyStrategy.mostCells(game.regions);
+    }
+    else {
+      return best;
+    }
+  }
+
+  public IMoveStrategy copy() {
+    return this;
+  }
+}
+
+// to represent a strategy that searches every sequence of the next depth
+// moves and picks the first move of the one flooding the most cells, or of
+// the shortest one flooding the whole board. It searches on the bit sets of a
+// FloodItSolver, kept from move to move, and prunes the search by only
+// playing a color that can be eliminated when there is one, and by scoring
+// the last move of a sequence from the frontier without playing it
+class LookaheadStrategy implements IMoveStrategy {
+  int depth;
+  // the search state, set again from the game before every move, or null
+  // before the first move
+  FloodItSolver solver;
+  // the number of cells of the board of the game
+  int area;
+
+  LookaheadStrategy(int depth) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("Invalid depth, the minimum is 1");
+    }
+    this.depth = depth;
+    this.solver = null;
+    this.area = 0;
+  }
+
+  public String name() {
+    return "lookahead-" + this.depth;
+  }
+
+  public int nextMove(FloodItGame game) {
+    if (this.solver == null || this.solver.graph != game.regions) {
+      this.solver = new FloodItSolver(game.regions, game.numColor, Long.MAX_VALUE, 0);
+    }
+    this.solver.reset();
+    this.area = game.board.area();
+    return this.bestMove(0, game.regions.floodedCells);
+  }
+
+  public IMoveStrategy copy() {
+    return new LookaheadStrategy(this.depth);
+  }
+
+  // to return the best color to play after the given number of moves of the
+  // sequence, from a state with the given number of flooded cells
+  int bestMove(int moves, int cells) {
+    int best = -1;
+    int bestScore = -1;
+    int only = this.solver.eliminatingColor();
+    for (int color = 0; color < this.solver.numColor; color = color + 1) {
+      if (this.solver.frontierCount[color] > 0 && (only == -1 || only == color)) {
+        int score = this.score(color, moves, cells);
+        if (score > bestScore) {
+          best = color;
+          bestScore = score;
+        }
+      }
+    }
+    return best;
+  }
+
+  // to return the score of playing the given color after the given number of
+  // moves of the sequence, from a state with the given number of flooded
+  // cells: the cells flooded at the end of the sequence, or more than the
+  // area of the board, the more so the fewer moves it took, if it floods the
+  // whole board
+  int score(int color, int moves, int cells) {
+    int flooded = cells + this.solver.gain(color);
+    if (flooded == this.area) {
+      return this.area + this.depth - moves;
+    }
+    else if (moves + 1 == this.depth) {
+      return flooded;
+    }
+    else {
+      this.solver.apply(color, moves);
+      int only = this.solver.eliminatingColor();
+      int bestScore = -1;
+      for (int next = 0; next < this.solver.numColor; next = next + 1) {
+        if (this.solver.frontierCount[next] > 0 && (only == -1 || only == next)) {
+          bestScore = Math.max(bestScore, this.score(next, moves + 1, flooded));
+        }
+      }
+      this.solver.undo(color, moves);
+      return bestScore;
+    }
+  }
+}
+
+// to represent the outcome of a strategy over the games of a tournament: the
+// games won within maxClicks, the games it could not finish, and how many
+// games took each number of moves to flood the board
+class TournamentResult {
+  String name;
+  int games;
+  int wins;
+  int forfeits;
+  // the number of flooded games that took each number of moves
+  int[] moveCounts;
+  long nanos;
+
+  TournamentResult(String name) {
+    this.name = name;
+    this.games = 0;
+    this.wins = 0;
+    this.forfeits = 0;
+    this.moveCounts = new int[16];
+    this.nanos = 0;
+  }
+
+  // EFFECT: to count a game that took the given number of moves to flood the
+  // board, or -1 if the strategy did not flood it, with the given maxClicks
+  void add(int moves, int maxClicks) {
+    this.games = this.games + 1;
+    if (moves < 0) {
+      this.forfeits = this.forfeits + 1;
+    }
+    else {
+      if (moves <= maxClicks) {
+        this.wins = this.wins + 1;
+      }
+      if (moves >= this.moveCounts.length) {
+        this.moveCounts = Arrays.copyOf(this.moveCounts, Math.max(moves + 1,
+            this.moveCounts.length * 2));
+      }
+      this.moveCounts[moves] = this.moveCounts[moves] + 1;
+    }
+  }
+
+  // EFFECT: to count the games of the given result in this one as well
+  void merge(TournamentResult that) {
+    this.games = this.games + that.games;
+    this.wins = this.wins + that.wins;
+    this.forfeits = this.forfeits + that.forfeits;
+    if (that.moveCounts.length > this.moveCounts.length) {
+      this.moveCounts = Arrays.copyOf(this.moveCounts, that.moveCounts.length);
+    }
+    for (int moves = 0; moves < that.moveCounts.length; moves = moves + 1) {
+      this.moveCounts[moves] = this.moveCounts[moves] + that.moveCounts[moves];
+    }
+  }
+
+  // to return the share of the games won
+  double winRate() {
+    return (double) this.wins / this.games;
+  }
+
+  // to return the number of games played per second
+  double gamesPerSecond() {
+    return this.games * 1e9 / this.nanos;
+  }
+
+  // to return the average number of moves of the flooded games, or NaN if no
+  // game was flooded
+  double meanMoves() {
+    long flooded = 0;
+    long total = 0;
+    for (int moves = 0; moves < this.moveCounts.length; moves = moves + 1) {
+      flooded = flooded + this.moveCounts[moves];
+      total = total + (long) moves * this.moveCounts[moves];
+    }
+    return (double) total / flooded;
+  }
+
+  // to return the smallest number of moves that at least the given share of
+  // the flooded games took at most, or -1 if no game was flooded
+  int percentile(double share) {
+    long flooded = this.games - this.forfeits;
+    long seen = 0;
+    for (int moves = 0; moves < this.moveCounts.length; moves = moves + 1) {
+      seen = seen + this.moveCounts[moves];
+      if (seen > 0 && seen >= share * flooded) {
+        return moves;
+      }
+    }
+    return -1;
+  }
+
+  // to return this result as one line of the report, with n/a for the move
+  // counts when no game was flooded
+  String format() {
+    String line = String.format("%-16s %8d %10.1f %8.3f %8d", this.name, this.games,
+        this.gamesPerSecond(), this.winRate(), this.forfeits);
+    if (this.forfeits == this.games) {
+      return line + String.format(" %8s %6s %6s %6s", "n/a", "n/a", "n/a", "n/a");
+    }
+    else {
+      return line + String.format(" %8.2f %6d %6d %6d", this.meanMoves(), this.percentile(0.5),
+          this.percentile(0.9), this.percentile(0.99));
+    }
+  }
+}
+
+// to represent a tournament that plays strategies on the same seeded boards,
+// many games at a time on a bounded pool of threads, and reports their
+// throughput, win rates and the distribution of their move counts. Run it with
+//   java Tournament [size] [colors] [games] [threads]
+class Tournament {
+  int size;
+  int numColor;
+  int games;
+  // the seed of the board of the first game; the game i has the seed
+  // firstSeed + i, and its board is drawn as FloodItWorld(size, numColor, seed)
+  // draws it
+  long firstSeed;
+  int threads;
+  ArrayList<Color> palette;
+
+  Tournament(int size, int numColor, int games, long firstSeed, int threads) {
+    this.size = size;
+    this.numColor = numColor;
+    this.games = games;
+    this.firstSeed = firstSeed;
+    this.threads = threads;
+    this.palette = FloodItGame.defaultColors();
+  }
+
+  // to return the built-in strategies
+  static ArrayList<IMoveStrategy> strategies() {
+    return new ArrayList<IMoveStrategy>(Arrays.asList(new CycleStrategy(), new GreedyStrategy(),
+        new EliminationStrategy(), new LookaheadStrategy(2), new LookaheadStrategy(3)));
+  }
+
+  public static void main(String[] args) {
+    int[] numbers = { 14, 6, 10000, Runtime.getRuntime().availableProcessors() };
+    for (int i = 0; i < args.length && i < numbers.length; i = i + 1) {
+      numbers[i] = Integer.parseInt(args[i]);
+    }
+    Tournament tournament = new Tournament(numbers[0], numbers[1], numbers[2], 0, numbers[3]);
+    System.out.println(String.format("%-16s %8s %10s %8s %8s %8s %6s %6s %6s", "strategy",
+        "games", "games/s", "win", "forfeit", "moves", "p50", "p90", "p99"));
+    for (TournamentResult result : tournament.runAll(Tournament.strategies())) {
+      System.out.println(result.format());
+    }
+  }
+
+  // to play the given strategies one after another and return their results
+  ArrayList<TournamentResult> runAll(ArrayList<IMoveStrategy> strategies) {
+    ArrayList<TournamentResult> results = new ArrayList<TournamentResult>();
+    for (IMoveStrategy strategy : strategies) {
+      results.add(this.run(strategy));
+    }
+    return results;
+  }
+
+  // to play every game of this tournament with the given strategy, each
+  // thread playing the next game not yet taken with its own copy of it
+  TournamentResult run(IMoveStrategy strategy) {
+    TournamentResult result = new TournamentResult(strategy.name());
+    AtomicInteger next = new AtomicInteger(0);
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+    long start = System.nanoTime();
+    try {
+      ArrayList<Future<TournamentResult>> parts = new ArrayList<Future<TournamentResult>>();
+      for (int i = 0; i < this.threads; i = i + 1) {
+        parts.add(pool.submit(new TournamentWorker(this, strategy.copy(), next)));
+      }
+      for (Future<TournamentResult> part : parts) {
+        result.merge(part.get());
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("The tournament was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A game of the tournament failed", e.getCause());
+    }
+    finally {
+      pool.shutdown();
+    }
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  // to return the maxClicks of the games of this tournament
+  int maxClicks() {
+    return FloodItGame.calMaxClicks(this.size, this.numColor);
+  }
+
+  // to play the game of the given number with the given strategy and return
+  // the number of moves it took to flood the board, or -1 if the strategy
+  // picked an illegal color or did not flood the board in as many moves as
+  // there are cells
+  int play(IMoveStrategy strategy, int number) {
+    FloodItGame game = new FloodItGame(FloodItGame.createBoard(this.size, this.numColor,
+        new Random(this.firstSeed + number), this.palette), this.numColor);
+    game.start();
+    game.maxClicks = this.maxClicks();
+    while (!game.allFlooded() && game.clicks < game.board.area()) {
+      if (!game.move(strategy.nextMove(game))) {
+        return -1;
+      }
+    }
+    if (game.allFlooded()) {
+      return game.clicks;
+    }
+    else {
+      return -1;
+    }
+  }
+}
+
+// to represent one thread of a tournament, playing games until there are none
+// left and counting their outcomes
+class TournamentWorker implements Callable<TournamentResult> {
+  Tournament tournament;
+  IMoveStrategy strategy;
+  // the number of the next game not yet taken by any thread
+  AtomicInteger next;
+
+  TournamentWorker(Tournament tournament, IMoveStrategy strategy, AtomicInteger next) {
+    this.tournament = tournament;
+    this.strategy = strategy;
+    this.next = next;
+  }
+
+  public TournamentResult call() {
+    TournamentResult result = new TournamentResult(this.strategy.name());
+    int number = this.next.getAndIncrement();
+    while (number < this.tournament.games) {
+      result.add(this.tournament.play(this.strategy, number), this.tournament.maxClicks());
+      number = this.next.getAndIncrement();
+    }
+    return result;
+  }
+}
+
+// to represent a service that computes the best next color of a game on a
+// background thread, so that the player can ask for a hint without waiting.
+// The hints are cached by the Zobrist hash of the state they are for, and the
+// hint being computed is cancelled when a hint for a newer state is requested
+class HintService implements ThreadFactory {
+  // the budget of the search for one hint
+  static final long NODE_BUDGET = 2000000;
+  static final long TIME_BUDGET_MILLIS = 250;
+  // the single thread the hints of every service are computed on, made on the
+  // first request, whose thread ends when it is idle
+  static ThreadPoolExecutor executor = null;
+  // the color of the hint of each state found so far, by the hash of the state
+  TranspositionTable cache;
+  // the regions of the board the cached hints are for, or null
+  int[] regionOf;
+  // the hint being computed, or null
+  Future<?> pending;
+
+  HintService() {
+    this.cache = new TranspositionTable(1 << 10);
+    this.regionOf = null;
+    this.pending = null;
+  }
+
+  // to return the thread of this service, which does not keep the program
+  // running
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, "floodit-hints");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  // to return the executor the hints are computed on, making it with the given
+  // thread factory on the first request
+  static synchronized ThreadPoolExecutor executor(ThreadFactory factory) {
+    if (HintService.executor == null) {
+      HintService.executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), factory);
+      HintService.executor.allowCoreThreadTimeOut(true);
+    }
+    return HintService.executor;
+  }
+
+  // EFFECT: to cancel the hint being computed, if any
+  synchronized void cancel() {
+    if (this.pending != null) {
+      this.pending.cancel(true);
+      this.pending = null;
+    }
+  }
+
+  // EFFECT: to start computing the hint for the state of the given game unless
+  // it is known, cancelling the hint being computed for an older state. The
+  // hint for the start of a game is the first move of the solution its
+  // maxClicks was derived from
+  synchronized void request(FloodItGame game) {
+    this.cancel();
+    this.forBoard(game);
+    long hash = game.stateHash();
+    if (game.allFlooded() || this.cache.probe(hash) != -1) {
+      return;
+    }
+    else if (game.moveCount == 0 && game.solution != null && game.solution.clicks() > 0) {
+      this.cache.store(hash, game.solution.moves[0]);
+    }
+    else {
+      this.pending = HintService.executor(this).submit(new HintTask(this,
+          new RegionGraph(game.regions), game.numColor, hash));
+    }
+  }
+
+  // to return the palette index of the hint for the state of the given game if
+  // it is ready, or else -1, without waiting for it
+  synchronized int hint(FloodItGame game) {
+    this.forBoard(game);
+    return this.cache.probe(game.stateHash());
+  }
+
+  // EFFECT: to cache the given hint for the state of the given hash on the
+  // board of the given regions, unless the cache is now for another board
+  synchronized void offer(int[] regionOf, long hash, int color) {
+    if (regionOf == this.regionOf) {
+      this.cache.store(hash, color);
+    }
+  }
+
+  // EFFECT: to forget the cached hints if they are for another board than the
+  // one of the given game
+  void forBoard(FloodItGame game) {
+    if (this.regionOf != game.regions.regionOf) {
+      this.cache.clear();
+      this.regionOf = game.regions.regionOf;
+    }
+  }
+}
+
+// to represent the computation of one hint: the solver searches a copy of the
+// state of the game, which the game may change in the meantime, and stops
+// early when the hint is cancelled
+class HintTask implements Runnable {
+  HintService service;
+  RegionGraph graph;
+  int numColor;
+  long hash;
+
+  HintTask(HintService service, RegionGraph graph, int numColor, long hash) {
+    this.service = service;
+    this.graph = graph;
+    this.numColor = numColor;
+    this.hash = hash;
+  }
+
+  public void run() {
+    SolverResult result = new FloodItSolver(this.graph, this.numColor,
+        HintService.NODE_BUDGET, HintService.TIME_BUDGET_MILLIS).solve();
+    if (!Thread.currentThread().isInterrupted() && result.clicks() > 0) {
+      this.service.offer(this.graph.regionOf, this.hash, result.moves[0]);
+    }
+  }
+}
+
+// to represent the picture of a board that is kept from frame to frame: the
+// cells are painted as blocks of pixels into one raster, and only the cells
+// marked dirty since the last frame are painted again
+class BoardRenderer {
+  // the width and height of a cell in pixels
+  int cellSize;
+  // the board painted in the raster, or null before the first frame
+  FloodItBoard board;
+  ComputedPixelImage raster;
+  // the indices of the cells to paint again, and the cells already queued
+  IntQueue dirty;
+  BitSet isDirty;
+
+  BoardRenderer(int cellSize) {
+    this.cellSize = cellSize;
+    this.board = null;
+    this.raster = null;
+    this.dirty = new IntQueue();
+    this.isDirty = new BitSet();
+  }
+
+  // EFFECT: to queue the cell at the given index to be painted on the next
+  // frame
+  void markDirty(int index) {
+    if (!this.isDirty.get(index)) {
+      this.isDirty.set(index);
+      this.dirty.add(index);
+    }
+  }
+
+  // EFFECT: to start a new raster for the given board and queue all of its
+  // cells to be painted
+  void reset(FloodItBoard board) {
+    this.board = board;
+    this.raster = new ComputedPixelImage(board.size * this.cellSize,
+        board.size * this.cellSize);
+    this.dirty.clear();
+    this.isDirty.clear();
+    for (int index = 0; index < board.area(); index = index + 1) {
+      this.markDirty(index);
+    }
+  }
+
+  // to return the raster of the given board, painting the dirty cells first,
+  // or every cell if the board is not the one painted on the last frame
+  WorldImage draw(FloodItBoard board) {
+    if (board != this.board) {
+      this.reset(board);
+    }
+    while (!this.dirty.isEmpty()) {
+      int index = this.dirty.remove();
+      this.isDirty.clear(index);
+      this.raster.setPixels(index % board.size * this.cellSize,
+          index / board.size * this.cellSize, this.cellSize, this.cellSize,
+          board.colorOf(index));
+    }
+    return this.raster;
+  }
+}
+
+// to represent a renderer for boards too big to draw with 20 pixels per
+// cell: the colors of the board are painted straight from its palette indices
+// into one picture kept from frame to frame, at a zoom level of either some
+// pixels per cell or some cells per pixel, and the picture is handed to the
+// scene as a single image
+class BoardRasterizer {
+  // the zoom levels: a positive level is the number of pixels per cell, and a
+  // negative level the number of cells per pixel
+  static final int[] ZOOMS = { -16, -8, -4, -2, 1, 2, 4, 8, 20 };
+  // the index of the current zoom level
+  int level;
+  // the picture of the board, or null before the first frame, and its width
+  // and height in pixels
+  ComputedPixelImage picture;
+  int width;
+
+  BoardRasterizer(int level) {
+    this.level = level;
+    this.picture = null;
+    this.width = 0;
+  }
+
+  // to return a rasterizer at the biggest zoom level that draws a board of the
+  // given size within the given number of pixels per side
+  static BoardRasterizer fitting(int size, int maxPixels) {
+    BoardRasterizer rasterizer = new BoardRasterizer(0);
+    while (rasterizer.level < ZOOMS.length - 1
+        && new BoardRasterizer(rasterizer.level + 1).imageSize(size) <= maxPixels) {
+      rasterizer.level = rasterizer.level + 1;
+    }
+    return rasterizer;
+  }
+
+  // to return the zoom level of this rasterizer
+  int zoom() {
+    return ZOOMS[this.level];
+  }
+
+  // to return the width and height in pixels of the image of a board of the
+  // given size
+  int imageSize(int size) {
+    if (this.zoom() > 0) {
+      return size * this.zoom();
+    }
+    else {
+      return (size - this.zoom() - 1) / -this.zoom();
+    }
+  }
+
+  // EFFECT: to zoom in by one level, if this is not the closest one
+  void zoomIn() {
+    if (this.level < ZOOMS.length - 1) {
+      this.level = this.level + 1;
+    }
+  }
+
+  // EFFECT: to zoom out by one level, if this is not the farthest one
+  void zoomOut() {
+    if (this.level > 0) {
+      this.level = this.level - 1;
+    }
+  }
+
+  // to return the index of the cell of a board of the given size under the
+  // given pixel of its image, or -1 if the pixel is outside of the image
+  int cellAt(int size, int x, int y) {
+    if (x < 0 || y < 0 || x >= this.imageSize(size) || y >= this.imageSize(size)) {
+      return -1;
+    }
+    else if (this.zoom() > 0) {
+      return (y / this.zoom()) * size + x / this.zoom();
+    }
+    else {
+      return (y * -this.zoom()) * size + x * -this.zoom();
+    }
+  }
+
+  // EFFECT: to paint every cell of the given board into the picture, one run
+  // of cells of the same color in a row at a time, making a new picture first
+  // if the size of the board or the zoom level changed
+  void paint(FloodItBoard board) {
+    int width = this.imageSize(board.size);
+    if (this.picture == null || this.width != width) {
+      this.width = width;
+      this.picture = new ComputedPixelImage(width, width);
+    }
+    // the pixels per cell drawn, and the cells per pixel, one of which is 1
+    int zoom = Math.max(this.zoom(), 1);
+    int step = Math.max(-this.zoom(), 1);
+    int cells = width / zoom;
+    for (int row = 0; row < cells; row = row + 1) {
+      int start = row * step * board.size;
+      int col = 0;
+      while (col < cells) {
+        byte color = board.colors[start + col * step];
+        int end = col + 1;
+        while (end < cells && board.colors[start + end * step] == color) {
+          end = end + 1;
+        }
+        this.picture.setPixels(col * zoom, row * zoom, (end - col) * zoom, zoom,
+            board.palette.get(color));
+        col = end;
+      }
+    }
+  }
+
+  // to paint the given board and return its picture for the scene
+  WorldImage draw(FloodItBoard board) {
+    this.paint(board);
+    return this.picture;
+  }
+}
+
+// to represent the Flood It World
+class FloodItWorld extends World {
+  // the board and the rules of the game being played
+  FloodItGame game;
+  // the indices of the cells the color wave still has to visit, and the cells
+  // it has already queued
+  IntQueue worklist = new IntQueue();
+  BitSet visited = new BitSet();
+  // the picture of the board, repainted only where the wave changed it
+  BoardRenderer renderer = new BoardRenderer(20);
+  // the renderer of boards too big for 20 pixels per cell, or null when the
+  // board fits
+  BoardRasterizer rasterizer = null;
+  // the number of cells the wave recolors per tick, or whether it recolors a
+  // whole diagonal per tick instead
+  int waveBatch = 1;
+  boolean waveByDiagonal = false;
+  // ArrayList of the default colors
+  ArrayList<Color> colors = FloodItGame.defaultColors();
+  Random rand = new Random();
+  // the seed the board of the game was drawn from, and the generator of the
+  // MoveLog that drew it
+  long seed;
+  int generator = MoveLog.RANDOM_GENERATOR;
+  // the log of the moves of the game, or null if its board has no seed
+  MoveLog log;
+  // the channel the logs of the games are streamed to, or null
+  WritableByteChannel logChannel = null;
+  int time = 0;
+  int numColor;
+  // the strategy playing the game in demo mode, toggled with the ‘b’ key, or
+  // null when the player plays
+  IMoveStrategy bot = null;
+  // the hints for the next color, computed in the background after every move,
+  // and whether they are shown, toggled with the ‘h’ key
+  HintService hints = new HintService();
+  boolean showHint = false;
+  // whether the games flood their boards 64 cells at a time with the bitboard
+  // engine, toggled with the ‘e’ key from the next game on
+  boolean bitboard = false;
+  // the biggest width and height in pixels of the picture of the board
+  static final int MAX_BOARD_PIXELS = 800;
+  // the file the game is saved to and loaded from with the ‘s’ and ‘l’ keys
+  static final String SNAPSHOT_FILE = "floodit.snapshot";
+
+  // the consructor: make sure the number of color is within the range of [3, 8]
+  // and the minimum of size is 2 so that the new created board is reasonable to
+  // be played
+  FloodItWorld(int size, int numColor) {
+    if (numColor > 8) {
+      throw new IllegalArgumentException("Invalid number of colors, the maximum is 8");
+    }
+    else if (numColor < 3) {
+      throw new IllegalArgumentException("Invalid number of colors, the minimum is 3");
+    }
+    else if (size < 2) {
+      throw new IllegalArgumentException("Invalid size, the minimum is 2");
+    }
+    else {
+      this.numColor = numColor;
+      this.generator = MoveLog.SPLITTABLE_GENERATOR;
+      this.reseed();
+      this.game = new FloodItGame(this.createBoard(size, numColor), numColor);
+      this.startGame();
+      this.game.deriveMaxClicks();
+      this.fitBoard();
+      this.startLog();
+    }
+  }
+
+  // the constructor for testing
+  FloodItWorld(int size, int numColor, int seed) {
+    this.numColor = numColor;
+    this.seed = seed;
+    this.rand = new Random(seed);
+    this.game = new FloodItGame(this.createBoard(size, numColor), numColor);
+    this.game.maxClicks = this.calMaxClicks(size, numColor);
+    this.startLog();
+  }
+
+  // the constructor for testing
+  FloodItWorld(int seed) {
+    this.rand = new Random(seed);
+    this.game = null;
+  }
+
+  // EFFECT: to draw the seed of the board of the next game from the current
+  // Random and start a new Random from it, so that the board can be drawn
+  // again from the seed
+  void reseed() {
+    this.seed = this.rand.nextLong();
+    this.rand = new Random(this.seed);
+  }
+
+  // EFFECT: to end the log of the last game, if it was left unfinished, and
+  // start the log of the game, streaming it to the log channel if there is one
+  void startLog() {
+    this.endLog(MoveLog.PLAYING);
+    int waveBatch = this.waveBatch;
+    if (this.waveByDiagonal) {
+      waveBatch = 0;
+    }
+    this.log = new MoveLog(this.generator, this.seed, this.game.board.size,
+        this.numColor, this.game.maxClicks, waveBatch);
+    if (this.logChannel != null) {
+      this.log.streamTo(this.logChannel);
+    }
+  }
+
+  // EFFECT: to stream the logs of the games from now on to the end of the file
+  // at the given path, starting with the log of the current game
+  void logTo(Path path) {
+    try {
+      this.logChannel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not open the move log " + path, e);
+    }
+    if (this.log != null) {
+      this.log.streamTo(this.logChannel);
+    }
+  }
+
+  // to create the board using the given size and number of color, drawn from
+  // the seed in parallel, or from the Random of the seed for the boards of the
+  // testing constructor
+  FloodItBoard createBoard(int size, int numColor) {
+    if (this.generator == MoveLog.SPLITTABLE_GENERATOR) {
+      return FloodItGame.generateBoard(size, numColor, this.seed, this.colors);
+    }
+    else {
+      return FloodItGame.createBoard(size, numColor, this.rand, this.colors);
+    }
+  }
+
+  // EFFECT: updates the upper left cell of the board and also the adjacent cells
+  // with the same color to be flooded
+  void startGame() {
+    if (this.bitboard) {
+      this.game.useEngine(new BitboardFloodEngine());
+    }
+    this.game.start();
+  }
+
+  // to return the color of the flooded area, or null before the game starts
+  Color floodColor() {
+    if (this.game.floodColor == -1) {
+      return null;
+    }
+    else {
+      return this.colors.get(this.game.floodColor);
+    }
+  }
+
+  // to calculate the max clicks based on the size and number of color
+  int calMaxClicks(int size, int numColor) {
+    return FloodItGame.calMaxClicks(size, numColor);
+  }
+
+  // to make the scene of this world
+  public WorldScene makeScene() {
+    long start = Metrics.start();
+    int pixels = this.boardPixels();
+    WorldScene ws = new WorldScene(pixels + 250, pixels + 60);
+    if (this.rasterizer == null) {
+      ws.placeImageXY(this.renderer.draw(this.game.board), pixels / 2, pixels / 2);
+    }
+    else {
+      ws.placeImageXY(this.rasterizer.draw(this.game.board), pixels / 2, pixels / 2);
+    }
+    ws.placeImageXY(new TextImage("Clicks: " + Integer.toString(this.game.clicks) + "/"
+        + Integer.toString(this.game.maxClicks), 20,
+        Color.BLACK), pixels + 125, 20);
+    ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
+        pixels + 125, 50);
+    // the hint is only shown once it is ready, never waiting for it
+    if (this.showHint) {
+      int hint = this.hints.hint(this.game);
+      if (hint != -1) {
+        ws.placeImageXY(new TextImage("Hint:", 20, Color.BLACK), pixels + 110, 80);
+        ws.placeImageXY(new RectangleImage(20, 20, OutlineMode.SOLID, this.colors.get(hint)),
+            pixels + 160, 80);
+      }
+    }
+    ws.placeImageXY(new TextImage("Press the ‘r’ key to reset the game ", 16, Color.BLACK),
+        pixels / 2 + 125, pixels + 30);
+    Metrics.MAKE_SCENE.stop(start);
+    return ws;
+  }
+
+  // EFFECT: to draw the board with the rasterizer, one row of cells per wave
+  // tick, if it is wider than MAX_BOARD_PIXELS at 20 pixels per cell
+  void fitBoard() {
+    int size = this.game.board.size;
+    if (size * 20 > MAX_BOARD_PIXELS) {
+      this.rasterizer = BoardRasterizer.fitting(size, MAX_BOARD_PIXELS);
+      this.waveBatch = size;
+    }
+    else {
+      this.rasterizer = null;
+      this.waveBatch = 1;
+    }
+  }
+
+  // to return the width and height in pixels of the picture of the board,
+  // where the size of each cell is 20 unless the board is rasterized
+  int boardPixels() {
+    if (this.rasterizer == null) {
+      return this.game.board.size * 20;
+    }
+    else {
+      return this.rasterizer.imageSize(this.game.board.size);
+    }
+  }
+
+  // EFFECT: if the cell in the given mouse location is unflooded and has the
+  // different color as the flooded area, the game picks its color and the
+  // color wave will be restarted from the top left cell
+  public void onMouseClicked(Posn pos) {
+    long start = Metrics.start();
+    int index;
+    if (this.rasterizer == null) {
+      index = this.game.board.indexAt(pos.x, pos.y, 20);
+    }
+    else {
+      index = this.rasterizer.cellAt(this.game.board.size, pos.x, pos.y);
+    }
+    if (index >= 0 && this.game.click(index)) {
+      if (this.log != null) {
+        this.log.append(this.time, this.game.floodColor);
+      }
+      this.startWave();
+      this.requestHint();
+    }
+    Metrics.CLICK.stop(start);
+  }
+
+  // EFFECT: handles ticking of the clock and updating the world if needed
+  public void onTick() {
+    long start = Metrics.start();
+    if (!this.worklist.isEmpty()) {
+      if (this.waveByDiagonal) {
+        int diagonal = this.diagonal(this.worklist.get(0));
+        while (!this.worklist.isEmpty() && this.diagonal(this.worklist.get(0)) == diagonal) {
+          this.waveStep();
+        }
+      }
+      else {
+        for (int i = 0; i < this.waveBatch && !this.worklist.isEmpty(); i = i + 1) {
+          this.waveStep();
+        }
+      }
+    }
+    else {
+      // to check if the user wins
+      if (this.game.isWon()) {
+        this.endLog(MoveLog.WON);
+        this.endOfWorld("YOU WIN!");
+      }
+      // to check if the user loses
+      else if (this.game.isLost()) {
+        this.endLog(MoveLog.LOST);
+        this.endOfWorld("YOU LOSE!");
+      }
+    }
+    this.time = this.time + 1;
+    // to let the bot move once the wave of its last move is finished, as if
+    // the player clicked before the next tick
+    if (this.bot != null && this.worklist.isEmpty() && !this.game.allFlooded()
+        && !this.game.isLost()) {
+      this.move(this.bot.nextMove(this.game));
+    }
+    Metrics.TICK.stop(start);
+  }
+
+  // EFFECT: to pick the given color for the flooded area if it is a legal move,
+  // and restart the color wave
+  void move(int color) {
+    if (this.game.move(color)) {
+      if (this.log != null) {
+        this.log.append(this.time, this.game.floodColor);
+      }
+      this.startWave();
+      this.requestHint();
+    }
+  }
+
+  // EFFECT: to start computing the hint for the state of the game while the
+  // hints are shown, the player plays and the game has started
+  void requestHint() {
+    if (this.showHint && this.bot == null && this.game.regions != null) {
+      this.hints.request(this.game);
+    }
+  }
+
+  // EFFECT: to end the log of the game with the given result at this tick, if
+  // it is not already ended. A game left unfinished ends as PLAYING
+  void endLog(int result) {
+    if (this.log != null && this.log.endTick < 0) {
+      this.log.end(this.time, result);
+    }
+  }
+
+  // EFFECT: to restart the color wave from the top left cell
+  void startWave() {
+    this.worklist.clear();
+    this.visited.clear();
+    this.addToWorklist(0);
+  }
+
+  // EFFECT: to recolor the first cell of the worklist if it is flooded, and
+  // queue its right and bottom cells
+  void waveStep() {
+    int index = this.worklist.remove();
+    if (Metrics.ENABLED) {
+      Metrics.WAVE_STEPS.add(1);
+    }
+    // change the color of cell if it is already flooded
+    if (this.game.board.isFlooded(index)
+        && this.game.board.colorAt(index) != this.game.floodColor) {
+      this.game.board.updateColor(index, this.game.floodColor);
+      this.renderer.markDirty(index);
+    }
+    if (index % this.game.board.size < this.game.board.size - 1) {
+      this.addToWorklist(index + 1);
+    }
+    if (index / this.game.board.size < this.game.board.size - 1) {
+      this.addToWorklist(index + this.game.board.size);
+    }
+  }
+
+  // to return the diagonal (row + column) of the cell at the given index
+  int diagonal(int index) {
+    return index / this.game.board.size + index % this.game.board.size;
+  }
+
+  // EFFECT: add the cell at the given index to the worklist if the wave has
+  // not already visited it
+  void addToWorklist(int index) {
+    if (!this.visited.get(index)) {
+      this.visited.set(index);
+      this.worklist.add(index);
+    }
+  }
+
+  // EFFECT: to reset the game if user presses the ‘r’ key, to undo and redo
+  // moves with the ‘z’ and ‘y’ keys, to save it to or load it from
+  // SNAPSHOT_FILE with the ‘s’ and ‘l’ keys, to zoom a rasterized board in
+  // or out with the ‘+’ and ‘-’ keys, and to start or stop the demo mode, where
+  // a bot plays the game, with the ‘b’ key, to show or hide the hint for the
+  // next color with the ‘h’ key, and to switch the flood engine of the next
+  // games with the ‘e’ key
+  public void onKeyEvent(String key) {
+    if (key.equals("e")) {
+      this.bitboard = !this.bitboard;
+    }
+    if (key.equals("h") && this.game.regions != null) {
+      this.showHint = !this.showHint;
+      if (this.showHint) {
+        this.requestHint();
+      }
+      else {
+        this.hints.cancel();
+      }
+    }
+    if (key.equals("b")) {
+      if (this.bot == null) {
+        this.bot = new LookaheadStrategy(2);
+        this.hints.cancel();
+      }
+      else {
+        this.bot = null;
+        this.requestHint();
+      }
+    }
+    if (key.equals("z")) {
+      this.undo();
+    }
+    if (key.equals("y")) {
+      this.redo();
+    }
+    if (key.equals("s")) {
+      this.save(Paths.get(SNAPSHOT_FILE));
+    }
+    if (key.equals("l")) {
+      this.load(Paths.get(SNAPSHOT_FILE));
+    }
+    if (this.rasterizer != null && key.equals("+")) {
+      this.rasterizer.zoomIn();
+    }
+    if (this.rasterizer != null && key.equals("-")) {
+      this.rasterizer.zoomOut();
+    }
+    if (key.equals("r")) {
+      this.reseed();
+      this.game = new FloodItGame(this.createBoard(this.game.board.size, this.numColor),
+          this.numColor);
+      this.worklist.clear();
+      this.visited.clear();
+      this.startGame();
+      this.game.deriveMaxClicks();
+      this.time = 0;
+      this.startLog();
+      this.requestHint();
+    }
+  }
+
+  // EFFECT: to take back the last move, repaint the cells it flooded and run
+  // the color wave with the flood color before it
+  void undo() {
+    MoveDelta delta = this.game.lastMove();
+    if (this.game.undo()) {
+      for (int i = 0; i < delta.cells.length; i = i + 1) {
+        this.renderer.markDirty(delta.cells[i]);
+      }
+      if (this.log != null) {
+        this.log.append(this.time, MoveLog.UNDO);
+      }
+      this.startWave();
+      this.requestHint();
+    }
+  }
+
+  // EFFECT: to make the last move taken back again and run the color wave
+  void redo() {
+    if (this.game.redo()) {
+      if (this.log != null) {
+        this.log.append(this.time, this.game.floodColor);
+      }
+      this.startWave();
+      this.requestHint();
+    }
+  }
+
+  // EFFECT: to write a snapshot of the game to the file at the given path
+  void save(Path path) {
+    try {
+      BoardSnapshot.save(path,
+          new ArrayList<BoardSnapshot>(Arrays.asList(BoardSnapshot.of(this.game, this.time))));
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not save the game to " + path, e);
+    }
+  }
+
+  // EFFECT: to continue the game of the first snapshot of the file at the given
+  // path, with the color wave already finished
+  void load(Path path) {
+    BoardSnapshot snapshot;
+    try {
+      snapshot = BoardSnapshot.readFrom(BoardSnapshot.map(path));
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Could not load the game from " + path, e);
+    }
+    this.game = snapshot.toGame(this.colors);
+    this.numColor = snapshot.numColor;
+    this.time = snapshot.time;
+    this.worklist.clear();
+    this.visited.clear();
+    this.fitBoard();
+    // the board of a snapshot has no seed to replay it from
+    this.endLog(MoveLog.PLAYING);
+    this.log = null;
+    this.requestHint();
+  }
+
+  // to check if the whole board is flooded
+  boolean allFlooded() {
+    return this.game.allFlooded();
+  }
+
+  // to return the number of unflooded cells of the given color
+  int remaining(Color color) {
+    return this.game.remaining(this.colors.indexOf(color));
+  }
+
+  // EFFECT: update the scene based on the win or lose message
+  public WorldScene lastScene(String msg) {
+    int pixels = this.boardPixels();
+    WorldScene ws = new WorldScene(pixels + 250, pixels + 60);
+    if (msg.equals("YOU WIN!")) {
+      ws.placeImageXY(new TextImage("YOU WIN!", 30, Color.BLACK), pixels / 2 + 125,
+          pixels * 3 / 10 + 20);
+      ws.placeImageXY(new TextImage("Score: " + Integer.toString(this.game.clicks), 20, Color.BLACK),
+          pixels / 2 + 125, pixels * 3 / 5 + 40);
+      ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
+          pixels / 2 + 125, pixels * 3 / 5 + 60);
+    }
+    else if (msg.equals("YOU LOSE!")) {
+      ws.placeImageXY(new TextImage("YOU LOSE!", 30, Color.BLACK), pixels / 2 + 125,
+          pixels * 3 / 10 + 20);
+      ws.placeImageXY(new TextImage("Score: " + Integer.toString(this.game.clicks), 20, Color.BLACK),
+          pixels / 2 + 125, pixels * 3 / 5 + 40);
+      ws.placeImageXY(new TextImage("Time: " + Integer.toString(this.time), 20, Color.BLACK),
+          pixels / 2 + 125, pixels * 3 / 5 + 60);
+    }
+    return ws;
+  }
+} 
+
+// to represent the metrics of the hot paths of the game: a latency histogram
+// per instrumented method and a few counters. They are only recorded when the
+// program runs with -Dfloodit.metrics=true; the flag is a constant, so when it
+// is off the JIT drops the instrumentation altogether. When it is on, the
+// metrics are published as the JMX MBean floodit:type=Metrics and written
+// every floodit.metrics.period seconds (10 by default) to the file
+// floodit.metrics.file (floodit-metrics.txt by default)
+class Metrics {
+  static final boolean ENABLED = Boolean.getBoolean("floodit.metrics");
+  static final LatencyHistogram CLICK = new LatencyHistogram("onMouseClicked");
+  static final LatencyHistogram FLOOD = new LatencyHistogram("floodedAdjSameColor");
+  static final LatencyHistogram TICK = new LatencyHistogram("onTick");
+  static final LatencyHistogram ALL_FLOODED = new LatencyHistogram("allFlooded");
+  static final LatencyHistogram MAKE_SCENE = new LatencyHistogram("makeScene");
+  static final MetricCounter FLOODED_CELLS = new MetricCounter("floodedCells");
+  static final MetricCounter WAVE_STEPS = new MetricCounter("waveSteps");
+  static final ArrayList<LatencyHistogram> HISTOGRAMS = new ArrayList<LatencyHistogram>(
+      Arrays.asList(CLICK, FLOOD, TICK, ALL_FLOODED, MAKE_SCENE));
+  static final ArrayList<MetricCounter> COUNTERS = new ArrayList<MetricCounter>(
+      Arrays.asList(FLOODED_CELLS, WAVE_STEPS));
+
+  static {
+    if (ENABLED) {
+      Metrics.publish();
+    }
+  }
+
+  // to return the start time of a measured call, or 0 when the metrics are off
+  static long start() {
+    if (ENABLED) {
+      return System.nanoTime();
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // EFFECT: to register the MBean of the metrics and start dumping them to
+  // their file
+  static void publish() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(
+          new MetricsMBean(HISTOGRAMS, COUNTERS), new ObjectName("floodit:type=Metrics"));
+    }
+    catch (JMException e) {
+      throw new IllegalStateException("Could not register the metrics", e);
+    }
+    MetricsDump dump = new MetricsDump(HISTOGRAMS, COUNTERS,
+        Paths.get(System.getProperty("floodit.metrics.file", "floodit-metrics.txt")));
+    long period = Long.getLong("floodit.metrics.period", 10);
+    Executors.newSingleThreadScheduledExecutor(dump).scheduleAtFixedRate(dump, period, period,
+        TimeUnit.SECONDS);
+  }
+
+  // to return the report of the given histograms and counters, one per line
+  static String report(ArrayList<LatencyHistogram> histograms,
+      ArrayList<MetricCounter> counters) {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-20s %10s %12s %12s %12s %12s %12s%n", "method", "calls",
+        "mean ns", "p50 ns", "p90 ns", "p99 ns", "max ns"));
+    for (LatencyHistogram histogram : histograms) {
+      report.append(histogram.format()).append(System.lineSeparator());
+    }
+    for (MetricCounter counter : counters) {
+      report.append(String.format("%-20s %10d%n", counter.name, counter.count()));
+    }
+    return report.toString();
+  }
+}
+
+// to represent a counter of events of the hot paths, cheap to add to from
+// many threads at once
+class MetricCounter {
+  String name;
+  LongAdder count;
+
+  MetricCounter(String name) {
+    this.name = name;
+    this.count = new LongAdder();
+  }
+
+  // EFFECT: to count the given number of events
+  void add(long events) {
+    this.count.add(events);
+  }
+
+  // to return the number of events counted
+  long count() {
+    return this.count.sum();
+  }
+}
+
+// to represent a histogram of latencies in nanoseconds in the manner of an
+// HDR histogram: every power of two is split into SUB_BUCKETS buckets of
+// equal width, so any latency is recorded within 1/16 of its value in a fixed
+// number of buckets, with no allocation. Recording is lock-free
+class LatencyHistogram {
+  static final int SUB_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BITS;
+  // the buckets below SUB_BUCKETS hold one value each, and then every power
+  // of two up to 2^62 has SUB_BUCKETS buckets
+  static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+  String name;
+  AtomicLongArray counts;
+  AtomicLong total;
+  AtomicLong max;
+
+  LatencyHistogram(String name) {
+    this.name = name;
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.total = new AtomicLong();
+    this.max = new AtomicLong();
+  }
+
+  // to return the bucket of the given non-negative value
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    else {
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+      return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+  }
+
+  // to return the smallest value of the given bucket
+  static long lowest(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    else {
+      int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+      return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS);
+    }
+  }
+
+  // EFFECT: to record the latency of a call that started at the given time of
+  // Metrics.start, if the metrics are on
+  void stop(long start) {
+    if (Metrics.ENABLED) {
+      this.record(System.nanoTime() - start);
+    }
+  }
+
+  // EFFECT: to record the given latency in nanoseconds
+  void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    this.counts.incrementAndGet(LatencyHistogram.bucket(value));
+    this.total.addAndGet(value);
+    long max = this.max.get();
+    while (value > max && !this.max.compareAndSet(max, value)) {
+      max = this.max.get();
+    }
+  }
+
+  // to return the number of latencies recorded
+  long count() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i = i + 1) {
+      count = count + this.counts.get(i);
+    }
+    return count;
+  }
+
+  // to return the mean of the latencies recorded, or 0 if there is none
+  double mean() {
+    long count = this.count();
+    if (count == 0) {
+      return 0;
+    }
+    else {
+      return (double) this.total.get() / count;
+    }
+  }
+
+  // to return the greatest latency recorded
+  long max() {
+    return this.max.get();
+  }
+
+  // to return a latency that at least the given share of the recorded ones do
+  // not exceed, as the highest value of its bucket but at most the greatest
+  // latency recorded, or 0 if there is none
+  long percentile(double share) {
+    long count = this.count();
+    long seen = 0;
+    for (int i = 0; i < BUCKETS && count > 0; i = i + 1) {
+      seen = seen + this.counts.get(i);
+      if (seen > 0 && seen >= share * count && i + 1 < BUCKETS) {
+        return Math.min(LatencyHistogram.lowest(i + 1) - 1, this.max());
+      }
+      else if (seen > 0 && seen >= share * count) {
+        return this.max();
+      }
+    }
+    return 0;
+  }
+
+  // to return this histogram as one line of the report of the metrics
+  String format() {
+    return String.format("%-20s %10d %12.0f %12d %12d %12d %12d", this.name, this.count(),
+        this.mean(), this.percentile(0.5), this.percentile(0.9), this.percentile(0.99),
+        this.max());
+  }
+}
+
+// to represent the JMX view of the metrics: one read-only attribute per
+// statistic of every histogram, named like onTick.p99, and one per counter
+class MetricsMBean implements DynamicMBean {
+  static final String[] STATISTICS = { "count", "mean", "p50", "p90", "p99", "max" };
+  ArrayList<LatencyHistogram> histograms;
+  ArrayList<MetricCounter> counters;
+
+  MetricsMBean(ArrayList<LatencyHistogram> histograms, ArrayList<MetricCounter> counters) {
+    this.histograms = histograms;
+    this.counters = counters;
+  }
+
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    for (MetricCounter counter : this.counters) {
+      if (attribute.equals(counter.name)) {
+        return counter.count();
+      }
+    }
+    for (LatencyHistogram histogram : this.histograms) {
+      if (attribute.startsWith(histogram.name + ".")) {
+        String statistic = attribute.substring(histogram.name.length() + 1);
+        if (statistic.equals("count")) {
+          return histogram.count();
+        }
+        else if (statistic.equals("mean")) {
+          return histogram.mean();
+        }
+        else if (statistic.equals("p50")) {
+          return histogram.percentile(0.5);
+        }
+        else if (statistic.equals("p90")) {
+          return histogram.percentile(0.9);
+        }
+        else if (statistic.equals("p99")) {
+          return histogram.percentile(0.99);
+        }
+        else if (statistic.equals("max")) {
+          return histogram.max();
+        }
+      }
+    }
+    throw new AttributeNotFoundException("No metric " + attribute);
+  }
+
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes) {
+      try {
+        list.add(new Attribute(attribute, this.getAttribute(attribute)));
+      }
+      catch (AttributeNotFoundException e) {
+        // an unknown attribute is left out of the list
+      }
+    }
+    return list;
+  }
+
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("The metrics are read-only");
+  }
+
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  public Object invoke(String action, Object[] params, String[] signature)
+      throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(action));
+  }
+
+  public MBeanInfo getMBeanInfo() {
+    ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    for (LatencyHistogram histogram : this.histograms) {
+      for (String statistic : STATISTICS) {
+        String type = "long";
+        if (statistic.equals("mean")) {
+          type = "double";
+        }
+        attributes.add(new MBeanAttributeInfo(histogram.name + "." + statistic, type,
+            "The " + statistic + " of the latencies of " + histogram.name + " in nanoseconds",
+            true, false, false));
+      }
+    }
+    for (MetricCounter counter : this.counters) {
+      attributes.add(new MBeanAttributeInfo(counter.name, "long",
+          "The number of " + counter.name, true, false, false));
+    }
+    return new MBeanInfo(MetricsMBean.class.getName(), "The metrics of Flood It",
+        attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, null, null);
+  }
+}
+
+// to represent the periodic dump of the metrics to a local file, which is
+// replaced by the latest report every time
+class MetricsDump implements Runnable, ThreadFactory {
+  ArrayList<LatencyHistogram> histograms;
+  ArrayList<MetricCounter> counters;
+  Path path;
+
+  MetricsDump(ArrayList<LatencyHistogram> histograms, ArrayList<MetricCounter> counters,
+      Path path) {
+    this.histograms = histograms;
+    this.counters = counters;
+    this.path = path;
+  }
+
+  // EFFECT: to write the report of the metrics to the file, next to it first
+  // so that readers never see half of it
+  public void run() {
+    try {
+      Path next = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+      Files.write(next, Metrics.report(this.histograms, this.counters).getBytes("UTF-8"));
+      Files.move(next, this.path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      // a failed dump is skipped, and the next one tries again
+      System.err.println("Could not dump the metrics to " + this.path + ": " + e.getMessage());
+    }
+  }
+
+  // to return the thread of the dumps, which does not keep the program running
+  public Thread newThread(Runnable task) {
+    Thread thread = new Thread(task, "floodit-metrics");
+    thread.setDaemon(true);
+    return thread;
+  }
+}
+
+// to represent one benchmark of a hot path of the game: its state is prepared
+// for a board size and number of colors, set up again before every run, and
+// only the run itself is measured
+abstract class ABenchmark {
+  String name;
+  int size;
+  int numColor;
+  // the board the runs of the benchmark start from
+  FloodItBoard board;
+
+  ABenchmark(String name) {
+    this.name = name;
+  }
+
+  // to check if a board of the given size is small enough for this benchmark
+  boolean fits(int size) {
+    return true;
+  }
+
+  // to return the number of operations done by one run
+  int operations() {
+    return 1;
+  }
+
+  // EFFECT: to create the board of the given size and number of colors that
+  // every run starts from
+  void prepare(int size, int numColor) {
+    this.size = size;
+    this.numColor = numColor;
+    this.board = FloodItGame.createBoard(size, numColor, new Random(size * 31 + numColor),
+        FloodItGame.defaultColors());
+  }
+
+  // EFFECT: to prepare the state of the next run, outside of the measurement
+  void setUp() {
+  }
+
+  // to return a new started game on a copy of the prepared board
+  FloodItGame startedGame() {
+    FloodItGame game = new FloodItGame(
+        new FloodItBoard(this.size, this.board.colors, this.board.palette), this.numColor);
+    game.start();
+    return game;
+  }
+
+  // to run the measured operation once and return a value depending on its
+  // result, so that it cannot be optimized away
+  abstract long run();
+}
+
+// to measure the creation of a board with random colors
+class CreateBoardBenchmark extends ABenchmark {
+  Random rand = new Random(0);
+
+  CreateBoardBenchmark() {
+    super("createBoard");
+  }
+
+  long run() {
+    return FloodItGame.createBoard(this.size, this.numColor, this.rand, this.board.palette)
+        .colorAt(0);
+  }
+}
+
+// to measure the creation of a board with random colors drawn in parallel
+// from a seed
+class GenerateBoardBenchmark extends ABenchmark {
+  long seed = 0;
+
+  GenerateBoardBenchmark() {
+    super("generateBoard");
+  }
+
+  long run() {
+    this.seed = this.seed + 1;
+    return FloodItGame.generateBoard(this.size, this.numColor, this.seed, this.board.palette)
+        .colorAt(0);
+  }
+}
+
+// to measure the connection of the cells of a board to their neighbors
+class ConnectCellsBenchmark extends ABenchmark {
+  ArrayList<ArrayList<Cell>> cells;
+
+  ConnectCellsBenchmark() {
+    super("connectCells");
+  }
+
+  boolean fits(int size) {
+    return size <= FloodItBenchmark.MAX_CELL_SIZE;
+  }
+
+  void setUp() {
+    this.cells = this.board.toCells();
+  }
+
+  long run() {
+    for (ArrayList<Cell> row : this.cells) {
+      for (Cell cell : row) {
+        cell.connectCells(this.size, this.cells);
+      }
+    }
+    return this.cells.get(0).get(0).right().isCell() ? 1 : 0;
+  }
+}
+
+// to measure the flooding of a whole board, picking the colors in turn until
+// it is flooded
+class FloodBenchmark extends ABenchmark {
+  FloodItGame game;
+
+  FloodBenchmark() {
+    super("floodedAdjSameColor");
+  }
+
+  void setUp() {
+    this.game = this.startedGame();
+  }
+
+  long run() {
+    int color = this.game.floodColor;
+    int moves = 0;
+    while (!this.game.allFlooded()) {
+      color = (color + 1) % this.numColor;
+      this.game.floodedAdjSameColor(color);
+      moves = moves + 1;
+    }
+    return moves;
+  }
+}
+
+// to measure the flooding of a whole board as FloodBenchmark does, with the
+// bitboard engine
+class BitboardFloodBenchmark extends FloodBenchmark {
+  BitboardFloodBenchmark() {
+    this.name = "bitboardFlood";
+  }
+
+  void setUp() {
+    this.game = new FloodItGame(
+        new FloodItBoard(this.size, this.board.colors, this.board.palette), this.numColor);
+    this.game.useEngine(new BitboardFloodEngine());
+    this.game.start();
+  }
+}
+
+// to measure the flooding of a whole board as FloodBenchmark does, on a board
+// of another topology with as many cells as the square one
+class TopologyFloodBenchmark extends FloodBenchmark {
+  // a topology of the kind of the boards, whatever its size
+  ITopology shape;
+  // the number of rows of the board per row of the square board
+  int stretch;
+  ITopology topology;
+
+  TopologyFloodBenchmark(String name, ITopology shape, int stretch) {
+    this.name = name;
+    this.shape = shape;
+    this.stretch = stretch;
+  }
+
+  void prepare(int size, int numColor) {
+    super.prepare(size, numColor);
+    this.topology = this.shape.withSize(size * this.stretch, size / this.stretch);
+  }
+
+  void setUp() {
+    this.game = new FloodItGame(new FloodItBoard(this.topology, this.board.colors,
+        this.board.palette), this.numColor);
+    this.game.start();
+  }
+}
+
+// to measure the propagation of a whole color wave, one row of cells per tick
+class WaveBenchmark extends ABenchmark {
+  FloodItWorld world;
+
+  WaveBenchmark() {
+    super("onTick");
+  }
+
+  void setUp() {
+    this.world = new FloodItWorld(0);
+    this.world.numColor = this.numColor;
+    this.world.game = this.startedGame();
+    this.world.game.move((this.world.game.floodColor + 1) % this.numColor);
+    this.world.waveBatch = this.size;
+    this.world.startWave();
+  }
+
+  long run() {
+    while (!this.world.worklist.isEmpty()) {
+      this.world.onTick();
+    }
+    return this.world.time;
+  }
+}
+
+// to measure the check of whether a board is flooded
+class AllFloodedBenchmark extends ABenchmark {
+  FloodItGame game;
+
+  AllFloodedBenchmark() {
+    super("allFlooded");
+  }
+
+  int operations() {
+    return 1024;
+  }
+
+  void setUp() {
+    this.game = this.startedGame();
+  }
+
+  long run() {
+    long flooded = 0;
+    for (int i = 0; i < 1024; i = i + 1) {
+      if (this.game.allFlooded()) {
+        flooded = flooded + 1;
+      }
+    }
+    return flooded;
+  }
+}
+
+// to measure the count of the cells of every color of a board
+class HistogramBenchmark extends ABenchmark {
+  HistogramBenchmark() {
+    super("histogram");
+  }
+
+  long run() {
+    int[] counts = new int[this.board.palette.size()];
+    ColorKernels.histogram(this.board.colors, 0, this.board.area(), counts);
+    return counts[0];
+  }
+}
+
+// to measure the masks of the cells of every color of a board, 64 cells per
+// mask, computed 8 cells at a time or one at a time
+class ColorMaskBenchmark extends ABenchmark {
+  boolean scalar;
+
+  ColorMaskBenchmark(boolean scalar) {
+    super(scalar ? "colorMaskScalar" : "colorMask");
+    this.scalar = scalar;
+  }
+
+  long run() {
+    long masks = 0;
+    for (int row = 0; row < this.size; row = row + 1) {
+      for (int col = 0; col < this.size; col = col + 64) {
+        int from = this.board.index(row, col);
+        int count = Math.min(64, this.size - col);
+        for (int color = 0; color < this.numColor; color = color + 1) {
+          if (this.scalar) {
+            masks = masks ^ ColorKernels.colorMaskScalar(this.board.colors, from, count, color);
+          }
+          else {
+            masks = masks ^ ColorKernels.colorMask(this.board.colors, from, count, color);
+          }
+        }
+      }
+    }
+    return masks;
+  }
+}
+
+// to measure the comparison of the colors of two equal boards, with the
+// comparison of Arrays or one cell at a time
+class SameColorsBenchmark extends ABenchmark {
+  boolean scalar;
+  byte[] copy;
+
+  SameColorsBenchmark(boolean scalar) {
+    super(scalar ? "sameColorsScalar" : "sameColors");
+    this.scalar = scalar;
+  }
+
+  void prepare(int size, int numColor) {
+    super.prepare(size, numColor);
+    this.copy = this.board.colors.clone();
+  }
+
+  long run() {
+    boolean same;
+    if (this.scalar) {
+      same = ColorKernels.equalScalar(this.board.colors, this.copy, this.board.area());
+    }
+    else {
+      same = ColorKernels.equal(this.board.colors, this.copy, this.board.area());
+    }
+    return same ? 1 : 0;
+  }
+}
+
+// to measure the drawing of the scene of a started game
+class MakeSceneBenchmark extends ABenchmark {
+  FloodItWorld world;
+
+  MakeSceneBenchmark() {
+    super("makeScene");
+  }
+
+  boolean fits(int size) {
+    return size <= FloodItBenchmark.MAX_CELL_SIZE;
+  }
+
+  void setUp() {
+    this.world = new FloodItWorld(0);
+    this.world.numColor = this.numColor;
+    this.world.game = this.startedGame();
+  }
+
+  long run() {
+    return System.identityHashCode(this.world.makeScene());
+  }
+}
+
+// to represent the measurement of one benchmark on one board
+class BenchmarkResult {
+  String name;
+  int size;
+  int numColor;
+  long operations;
+  long nanos;
+  long bytes;
+
+  BenchmarkResult(String name, int size, int numColor, long operations, long nanos,
+      long bytes) {
+    this.name = name;
+    this.size = size;
+    this.numColor = numColor;
+    this.operations = operations;
+    this.nanos = nanos;
+    this.bytes = bytes;
+  }
+
+  // to return the average time of one operation in nanoseconds
+  double nanosPerOperation() {
+    return (double) this.nanos / this.operations;
+  }
+
+  // to return the average number of bytes allocated by one operation
+  double bytesPerOperation() {
+    return (double) this.bytes / this.operations;
+  }
+
+  // to return this result as one line of the report
+  String format() {
+    return String.format("%-20s %6d %6d %10d %16.1f %16.1f", this.name, this.size,
+        this.numColor, this.operations, this.nanosPerOperation(), this.bytesPerOperation());
+  }
+}
+
+// to measure the time and the memory allocated per operation by the hot paths
+// of the game across board sizes and numbers of colors. Run it with
+//   java FloodItBenchmark [sizes] [colors]
+// where sizes and colors are comma separated lists such as 14,256 and 3,8
+class FloodItBenchmark {
+  static final int[] SIZES = { 14, 64, 256, 1024, 4096 };
+  static final int[] COLORS = { 3, 4, 5, 6, 7, 8 };
+  // the views of the cells of bigger boards do not fit in a default heap, so
+  // the benchmarks on cells skip them
+  static final int MAX_CELL_SIZE = 1024;
+  static final int MIN_RUNS = 3;
+  static final long WARMUP_MILLIS = 200;
+  static final long MEASURE_MILLIS = 500;
+
+  ArrayList<ABenchmark> benchmarks;
+  ThreadMXBean threads;
+  // the sum of the results of the runs, so that they cannot be optimized away
+  long sink;
+
+  FloodItBenchmark() {
+    this.benchmarks = new ArrayList<ABenchmark>(Arrays.asList(new CreateBoardBenchmark(),
+        new GenerateBoardBenchmark(), new ConnectCellsBenchmark(), new FloodBenchmark(),
+        new TopologyFloodBenchmark("rectangleFlood", new GridTopology(1, 1), 2),
+        new TopologyFloodBenchmark("torusFlood", new TorusTopology(1, 1), 1),
+        new TopologyFloodBenchmark("hexFlood", new HexTopology(1, 1), 1),
+        new BitboardFloodBenchmark(), new WaveBenchmark(), new AllFloodedBenchmark(),
+        new HistogramBenchmark(), new ColorMaskBenchmark(false), new ColorMaskBenchmark(true),
+        new SameColorsBenchmark(false), new SameColorsBenchmark(true), new MakeSceneBenchmark()));
+    this.threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    this.threads.setThreadAllocatedMemoryEnabled(true);
+    this.sink = 0;
+  }
+
+  public static void main(String[] args) {
+    int[] sizes = SIZES;
+    int[] colors = COLORS;
+    if (args.length > 0) {
+      sizes = FloodItBenchmark.parse(args[0]);
+    }
+    if (args.length > 1) {
+      colors = FloodItBenchmark.parse(args[1]);
+    }
+    new FloodItBenchmark().runAll(sizes, colors);
+  }
+
+  // to parse a comma separated list of numbers
+  static int[] parse(String list) {
+    String[] items = list.split(",");
+    int[] numbers = new int[items.length];
+    for (int i = 0; i < items.length; i = i + 1) {
+      numbers[i] = Integer.parseInt(items[i].trim());
+    }
+    return numbers;
+  }
+
+  // EFFECT: to warm up and measure every benchmark on every board of the given
+  // sizes and numbers of colors, printing one line per measurement
+  void runAll(int[] sizes, int[] colors) {
+    System.out.println(String.format("%-20s %6s %6s %10s %16s %16s", "benchmark", "size",
+        "colors", "ops", "ns/op", "B/op"));
+    for (ABenchmark benchmark : this.benchmarks) {
+      for (int size : sizes) {
+        for (int numColor : colors) {
+          if (benchmark.fits(size)) {
+            benchmark.prepare(size, numColor);
+            this.measure(benchmark, WARMUP_MILLIS);
+            System.out.println(this.measure(benchmark, MEASURE_MILLIS).format());
+          }
+        }
+      }
+    }
+  }
+
+  // to run the given prepared benchmark at least MIN_RUNS times and for at
+  // least the given time, counting the set ups, and return the time and the
+  // memory its runs took
+  BenchmarkResult measure(ABenchmark benchmark, long millis) {
+    long thread = Thread.currentThread().getId();
+    long deadline = System.nanoTime() + millis * 1000000;
+    long runs = 0;
+    long nanos = 0;
+    long bytes = 0;
+    while (runs < MIN_RUNS || System.nanoTime() < deadline) {
+      benchmark.setUp();
+      long allocated = this.threads.getThreadAllocatedBytes(thread);
+      long start = System.nanoTime();
+      this.sink = this.sink + benchmark.run();
+      nanos = nanos + (System.nanoTime() - start);
+      bytes = bytes + (this.threads.getThreadAllocatedBytes(thread) - allocated);
+      runs = runs + 1;
+    }
+    return new BenchmarkResult(benchmark.name, benchmark.size, benchmark.numColor,
+        runs * benchmark.operations(), nanos, bytes);
+  }
+}
+
+// to represent the examples and tests for FloodItWorld class
+class ExamplesFloodIt {
+  FloodItWorld world1;
+  FloodItWorld world2;
+  ICell mtCell;
+  MtCell mtCell1;
+  Cell cell11;
+  Cell cell12;
+  Cell cell13;
+  Cell cell14;
+  Cell cell21;
+  Cell cell22;
+  Cell cell23;
+  Cell cell24;
+  Cell cell25;
+  Cell cell26;
+  Cell cell27;
+  Cell cell28;
+  Cell cell29;
+  Cell cell31;
+  Cell cell32;
+  Cell cell33;
+  Cell cell34;
+  Cell cell35;
+  Cell cell36;
+  Cell cell37;
+  Cell cell38;
+  Cell cell39;
+  ICell cell41;
+  ArrayList<ArrayList<Cell>> board1;
+  ArrayList<ArrayList<Cell>> board2;
+  ArrayList<Posn> posns;
+
+  // to initialize the examples
+  void initFloodIt() {
+    this.world1 = new FloodItWorld(5); // board is null
+    this.world2 = new FloodItWorld(3, 4, 5); // not connected board
+    this.mtCell = new MtCell();
+
+    this.cell11 = new Cell(0, 0, Color.GREEN);
+    this.cell12 = new Cell(0, 1, Color.YELLOW);
+    this.cell13 = new Cell(1, 0, Color.GREEN);
+    this.cell14 = new Cell(1, 1, Color.GREEN);
+    this.board1 = new ArrayList<ArrayList<Cell>>(
+        Arrays.asList(new ArrayList<Cell>(Arrays.asList(this.cell11, this.cell12)),
+            new ArrayList<Cell>(Arrays.asList(this.cell13, this.cell14))));
+
+    this.cell21 = new Cell(0, 0, Color.YELLOW);
     this.cell22 = new Cell(0, 1, Color.ORANGE);
     this.cell23 = new Cell(0, 2, Color.YELLOW);
     this.cell24 = new Cell(1, 0, Color.ORANGE);
@@ -502,195 +5504,1433 @@ class ExamplesFloodIt {
     this.cell38 = new Cell(2, 1, Color.ORANGE);
     this.cell39 = new Cell(2, 2, Color.YELLOW);
 
-    this.posns = new ArrayList<Posn>(Arrays.asList(new Posn(1, 0), new Posn(0, 1)));
+    this.posns = new ArrayList<Posn>(Arrays.asList(new Posn(1, 0), new Posn(0, 1)));
+
+    this.cell41 = new Cell(0, 0, Color.BLACK);
+    this.mtCell1 = new MtCell();
+  }
+
+  // test the method createBoard in FloodItWorld class
+  void testCreateBoard(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world1.createBoard(2, 3).toCells(), this.board1);
+    t.checkExpect(this.world1.createBoard(3, 4).toCells(), this.board2);
+  }
+
+  // test the method connectCells in Cell class
+  void testCellConnectCells(Tester t) {
+    // test the top left corner
+    this.initFloodIt();
+    t.checkExpect(this.cell21.left(), null);
+    t.checkExpect(this.cell21.top(), null);
+    t.checkExpect(this.cell21.right(), null);
+    t.checkExpect(this.cell21.bottom(), null);
+    this.cell21.connectCells(3, this.board2);
+    t.checkExpect(this.cell21.left(), this.mtCell);
+    t.checkExpect(this.cell21.top(), this.mtCell);
+    t.checkExpect(this.cell21.right(), this.cell22);
+    t.checkExpect(this.cell21.bottom(), this.cell24);
+
+    // test the top right corner
+    this.initFloodIt();
+    t.checkExpect(this.cell23.left(), null);
+    t.checkExpect(this.cell23.top(), null);
+    t.checkExpect(this.cell23.right(), null);
+    t.checkExpect(this.cell23.bottom(), null);
+    this.cell23.connectCells(3, this.board2);
+    t.checkExpect(this.cell23.left(), this.cell22);
+    t.checkExpect(this.cell23.top(), this.mtCell);
+    t.checkExpect(this.cell23.right(), this.mtCell);
+    t.checkExpect(this.cell23.bottom(), this.cell26);
+
+    // test the bottom left corner
+    this.initFloodIt();
+    t.checkExpect(this.cell27.left(), null);
+    t.checkExpect(this.cell27.top(), null);
+    t.checkExpect(this.cell27.right(), null);
+    t.checkExpect(this.cell27.bottom(), null);
+    this.cell27.connectCells(3, this.board2);
+    t.checkExpect(this.cell27.left(), this.mtCell);
+    t.checkExpect(this.cell27.top(), this.cell24);
+    t.checkExpect(this.cell27.right(), this.cell28);
+    t.checkExpect(this.cell27.bottom(), this.mtCell);
+
+    // test the bottom right corner
+    this.initFloodIt();
+    t.checkExpect(this.cell29.left(), null);
+    t.checkExpect(this.cell29.top(), null);
+    t.checkExpect(this.cell29.right(), null);
+    t.checkExpect(this.cell29.bottom(), null);
+    this.cell29.connectCells(3, this.board2);
+    t.checkExpect(this.cell29.left(), this.cell28);
+    t.checkExpect(this.cell29.top(), this.cell26);
+    t.checkExpect(this.cell29.right(), this.mtCell);
+    t.checkExpect(this.cell29.bottom(), this.mtCell);
+
+    // test the top middle cell
+    this.initFloodIt();
+    t.checkExpect(this.cell22.left(), null);
+    t.checkExpect(this.cell22.top(), null);
+    t.checkExpect(this.cell22.right(), null);
+    t.checkExpect(this.cell22.bottom(), null);
+    this.cell22.connectCells(3, this.board2);
+    t.checkExpect(this.cell22.left(), this.cell21);
+    t.checkExpect(this.cell22.top(), this.mtCell);
+    t.checkExpect(this.cell22.right(), this.cell23);
+    t.checkExpect(this.cell22.bottom(), this.cell25);
+
+    // test the bottom middle cell
+    this.initFloodIt();
+    t.checkExpect(this.cell28.left(), null);
+    t.checkExpect(this.cell28.top(), null);
+    t.checkExpect(this.cell28.right(), null);
+    t.checkExpect(this.cell28.bottom(), null);
+    this.cell28.connectCells(3, this.board2);
+    t.checkExpect(this.cell28.left(), this.cell27);
+    t.checkExpect(this.cell28.top(), this.cell25);
+    t.checkExpect(this.cell28.right(), this.cell29);
+    t.checkExpect(this.cell28.bottom(), this.mtCell);
+
+    // test the left border middle cell
+    this.initFloodIt();
+    t.checkExpect(this.cell24.left(), null);
+    t.checkExpect(this.cell24.top(), null);
+    t.checkExpect(this.cell24.right(), null);
+    t.checkExpect(this.cell24.bottom(), null);
+    this.cell24.connectCells(3, this.board2);
+    t.checkExpect(this.cell24.left(), this.mtCell);
+    t.checkExpect(this.cell24.top(), this.cell21);
+    t.checkExpect(this.cell24.right(), this.cell25);
+    t.checkExpect(this.cell24.bottom(), this.cell27);
+
+    // test the right border middle cell
+    this.initFloodIt();
+    t.checkExpect(this.cell26.left(), null);
+    t.checkExpect(this.cell26.top(), null);
+    t.checkExpect(this.cell26.right(), null);
+    t.checkExpect(this.cell26.bottom(), null);
+    this.cell26.connectCells(3, this.board2);
+    t.checkExpect(this.cell26.left(), this.cell25);
+    t.checkExpect(this.cell26.top(), this.cell23);
+    t.checkExpect(this.cell26.right(), this.mtCell);
+    t.checkExpect(this.cell26.bottom(), this.cell29);
+
+    // test the middle cell
+    this.initFloodIt();
+    t.checkExpect(this.cell25.left(), null);
+    t.checkExpect(this.cell25.top(), null);
+    t.checkExpect(this.cell25.right(), null);
+    t.checkExpect(this.cell25.bottom(), null);
+    this.cell25.connectCells(3, this.board2);
+    t.checkExpect(this.cell25.left(), this.cell24);
+    t.checkExpect(this.cell25.top(), this.cell22);
+    t.checkExpect(this.cell25.right(), this.cell26);
+    t.checkExpect(this.cell25.bottom(), this.cell28);
+
+    // the border is the same MtCell for every cell, and the neighbors are
+    // looked up in the board as it is when they are asked for
+    this.cell21.connectCells(3, this.board2);
+    t.checkExpect(this.cell21.left() == MtCell.EMPTY, true);
+    t.checkExpect(this.cell21.top() == this.cell25.neighbor(-2, 0), true);
+    t.checkExpect(this.cell25.neighbor(-1, -1), this.cell21);
+    t.checkExpect(this.cell25.neighbor(0, 2), MtCell.EMPTY);
+    this.board2.get(1).set(0, this.cell11);
+    t.checkExpect(this.cell25.left(), this.cell11);
+  }
+
+  // test the method getCell in FloodItBoard class
+  void testGetCell(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world2.game.board.getCell(0, -1), this.mtCell);
+    t.checkExpect(this.world2.game.board.getCell(-1, 0), this.mtCell);
+    t.checkExpect(this.world2.game.board.getCell(0, 3), this.mtCell);
+    t.checkExpect(this.world2.game.board.getCell(3, 2), this.mtCell);
+    t.checkExpect(this.world2.game.board.getCell(3, 2) == MtCell.EMPTY, true);
+    t.checkExpect(this.world2.game.board.getCell(0, 1), this.cell32);
+    t.checkExpect(this.world2.game.board.getCell(2, 2), this.cell39);
+  }
+
+  // test the method cellAt in FloodItBoard class
+  void testCellAt(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world2.game.board.cellAt(0, 0), this.cell31);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2), this.cell36);
+    this.world2.game.board.updateFlooded(this.world2.game.board.index(1, 2));
+    this.cell36.updateFlooded();
+    t.checkExpect(this.world2.game.board.cellAt(1, 2), this.cell36);
+  }
+
+  // test the method toCells in FloodItBoard class
+  void testToCells(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(new FloodItBoard(this.board2, this.world1.colors).toCells(), this.board2);
+    t.checkExpect(this.world2.game.board.toCells().get(2),
+        new ArrayList<Cell>(Arrays.asList(this.cell37, this.cell38, this.cell39)));
+  }
+
+  // test the method calMaxClicks in FloodItWorld class
+  void testCalMaxClicks(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world2.calMaxClicks(3, 4), 3);
+    t.checkExpect(this.world2.calMaxClicks(3, 5), 3);
+  }
+
+  // test the method drawCell in Cell class
+  void testDrawCell(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.cell11.drawCell(),
+        new RectangleImage(20, 20, OutlineMode.SOLID, Color.GREEN));
+    t.checkExpect(this.cell12.drawCell(),
+        new RectangleImage(20, 20, OutlineMode.SOLID, Color.YELLOW));
+  }
+
+  // test the method makeScene in FloodItWorld class
+  void testMakeScene(Tester t) {
+    this.initFloodIt();
+    ComputedPixelImage raster = new ComputedPixelImage(60, 60);
+    raster.setPixels(0, 0, 20, 20, Color.GREEN);
+    raster.setPixels(20, 0, 20, 20, Color.RED);
+    raster.setPixels(40, 0, 20, 20, Color.RED);
+    raster.setPixels(0, 20, 20, 20, Color.GREEN);
+    raster.setPixels(20, 20, 20, 20, Color.YELLOW);
+    raster.setPixels(40, 20, 20, 20, Color.ORANGE);
+    raster.setPixels(0, 40, 20, 20, Color.YELLOW);
+    raster.setPixels(20, 40, 20, 20, Color.ORANGE);
+    raster.setPixels(40, 40, 20, 20, Color.YELLOW);
+    WorldScene bg = new WorldScene(310, 120);
+    bg.placeImageXY(raster, 30, 30);
+    bg.placeImageXY(new TextImage("Clicks: " + Integer.toString(0) + "/" + Integer.toString(3), 20,
+        Color.BLACK), 185, 20);
+    bg.placeImageXY(new TextImage("Time: " + Integer.toString(0), 20, Color.BLACK), 185, 50);
+    bg.placeImageXY(new TextImage("Press the ‘r’ key to reset the game ", 16, Color.BLACK), 155,
+        90);
+    t.checkExpect(this.world2.makeScene(), bg);
+  }
+
+  // test the methods markDirty, reset and draw in BoardRenderer class
+  void testBoardRenderer(Tester t) {
+    this.initFloodIt();
+    BoardRenderer renderer = new BoardRenderer(2);
+    FloodItBoard board = this.world2.game.board;
+    ComputedPixelImage raster = new ComputedPixelImage(6, 6);
+    raster.setPixels(0, 0, 2, 2, Color.GREEN);
+    raster.setPixels(2, 0, 2, 2, Color.RED);
+    raster.setPixels(4, 0, 2, 2, Color.RED);
+    raster.setPixels(0, 2, 2, 2, Color.GREEN);
+    raster.setPixels(2, 2, 2, 2, Color.YELLOW);
+    raster.setPixels(4, 2, 2, 2, Color.ORANGE);
+    raster.setPixels(0, 4, 2, 2, Color.YELLOW);
+    raster.setPixels(2, 4, 2, 2, Color.ORANGE);
+    raster.setPixels(4, 4, 2, 2, Color.YELLOW);
+    t.checkExpect(renderer.draw(board), raster);
+    t.checkExpect(renderer.dirty.isEmpty(), true);
+
+    // a cell that is not marked dirty is not painted again
+    board.updateColor(0, 0);
+    t.checkExpect(renderer.draw(board), raster);
+    renderer.markDirty(0);
+    renderer.markDirty(0);
+    t.checkExpect(renderer.dirty.size(), 1);
+    raster.setPixels(0, 0, 2, 2, Color.RED);
+    t.checkExpect(renderer.draw(board), raster);
+    t.checkExpect(renderer.isDirty.isEmpty(), true);
+
+    // a new board is painted from scratch
+    FloodItBoard other = new FloodItBoard(3, board.colors, board.palette);
+    other.updateColor(8, 2);
+    raster.setPixels(4, 4, 2, 2, Color.GREEN);
+    t.checkExpect(renderer.draw(other), raster);
+    t.checkExpect(renderer.board, other);
+
+    // the wave marks the cells it recolors
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.makeScene();
+    this.world2.game.move(0);
+    this.world2.startWave();
+    this.world2.onTick();
+    this.world2.onTick();
+    t.checkExpect(this.world2.renderer.dirty.toArray(), new int[] { 0 });
+  }
+
+  // test the methods fitting, imageSize, zoomIn, zoomOut and cellAt in
+  // BoardRasterizer class
+  void testBoardRasterizerZoom(Tester t) {
+    BoardRasterizer rasterizer = BoardRasterizer.fitting(4096, 800);
+    t.checkExpect(rasterizer.zoom(), -8);
+    t.checkExpect(rasterizer.imageSize(4096), 512);
+    t.checkExpect(BoardRasterizer.fitting(100, 800).zoom(), 8);
+    t.checkExpect(BoardRasterizer.fitting(101, 800).zoom(), 4);
+    t.checkExpect(BoardRasterizer.fitting(10, 800).zoom(), 20);
+    t.checkExpect(BoardRasterizer.fitting(100000, 800).zoom(), -16);
+    t.checkExpect(new BoardRasterizer(3).imageSize(5), 3);
+    rasterizer.zoomIn();
+    t.checkExpect(rasterizer.zoom(), -4);
+    rasterizer.level = 8;
+    rasterizer.zoomIn();
+    t.checkExpect(rasterizer.zoom(), 20);
+    rasterizer.level = 0;
+    rasterizer.zoomOut();
+    t.checkExpect(rasterizer.zoom(), -16);
+    t.checkExpect(new BoardRasterizer(5).cellAt(3, 5, 3), 5);
+    t.checkExpect(new BoardRasterizer(5).cellAt(3, 6, 0), -1);
+    t.checkExpect(new BoardRasterizer(5).cellAt(3, -1, 0), -1);
+    t.checkExpect(new BoardRasterizer(3).cellAt(5, 2, 1), 14);
+    t.checkExpect(new BoardRasterizer(3).cellAt(5, 3, 1), -1);
+  }
+
+  // test the methods paint and draw in BoardRasterizer class
+  void testBoardRasterizerDraw(Tester t) {
+    this.initFloodIt();
+    FloodItBoard board = this.world2.game.board;
+    BoardRasterizer rasterizer = new BoardRasterizer(5);
+    rasterizer.paint(board);
+    t.checkExpect(rasterizer.width, 6);
+    ComputedPixelImage picture = new ComputedPixelImage(6, 6);
+    picture.setPixels(0, 0, 2, 2, Color.GREEN);
+    picture.setPixels(2, 0, 4, 2, Color.RED);
+    picture.setPixels(0, 2, 2, 2, Color.GREEN);
+    picture.setPixels(2, 2, 2, 2, Color.YELLOW);
+    picture.setPixels(4, 2, 2, 2, Color.ORANGE);
+    picture.setPixels(0, 4, 2, 2, Color.YELLOW);
+    picture.setPixels(2, 4, 2, 2, Color.ORANGE);
+    picture.setPixels(4, 4, 2, 2, Color.YELLOW);
+    t.checkExpect(rasterizer.picture, picture);
+    // the same picture is painted again on the next frame
+    ComputedPixelImage painted = rasterizer.picture;
+    t.checkExpect(rasterizer.draw(board) == painted, true);
+    t.checkExpect(rasterizer.picture, picture);
+
+    // two cells per pixel show the top left cell of each square of four
+    rasterizer.zoomOut();
+    rasterizer.zoomOut();
+    t.checkExpect(rasterizer.zoom(), -2);
+    ComputedPixelImage small = new ComputedPixelImage(2, 2);
+    small.setPixel(0, 0, Color.GREEN);
+    small.setPixel(1, 0, Color.RED);
+    small.setPixel(0, 1, Color.YELLOW);
+    small.setPixel(1, 1, Color.YELLOW);
+    t.checkExpect(rasterizer.draw(board), small);
+  }
+
+  // test the rasterized board in FloodItWorld class
+  void testRasterizedWorld(Tester t) {
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.rasterizer = new BoardRasterizer(5);
+    t.checkExpect(this.world2.boardPixels(), 6);
+    WorldScene scene = new WorldScene(256, 66);
+    scene.placeImageXY(new BoardRasterizer(5).draw(this.world2.game.board), 3, 3);
+    scene.placeImageXY(new TextImage("Clicks: 0/3", 20, Color.BLACK), 131, 20);
+    scene.placeImageXY(new TextImage("Time: 0", 20, Color.BLACK), 131, 50);
+    scene.placeImageXY(new TextImage("Press the ‘r’ key to reset the game ", 16, Color.BLACK),
+        128, 36);
+    t.checkExpect(this.world2.makeScene(), scene);
+    this.world2.onMouseClicked(new Posn(7, 0));
+    t.checkExpect(this.world2.game.clicks, 0);
+    this.world2.onMouseClicked(new Posn(3, 1));
+    t.checkExpect(this.world2.game.clicks, 1);
+    t.checkExpect(this.world2.game.floodColor, 0);
+    this.world2.onKeyEvent("+");
+    t.checkExpect(this.world2.boardPixels(), 12);
+    this.world2.onKeyEvent("-");
+    this.world2.onKeyEvent("-");
+    t.checkExpect(this.world2.boardPixels(), 3);
+    t.checkExpect(this.world1.rasterizer, null);
+  }
+
+  // test the methods of, bytes, writeTo and readFrom in BoardSnapshot class
+  void testBoardSnapshot(Tester t) {
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.game.move(0);
+    BoardSnapshot snapshot = BoardSnapshot.of(this.world2.game, 7);
+    t.checkExpect(snapshot.size, 3);
+    t.checkExpect(snapshot.floodColor, 0);
+    t.checkExpect(snapshot.clicks, 1);
+    t.checkExpect(snapshot.maxClicks, 3);
+    t.checkExpect(snapshot.time, 7);
+    t.checkExpect(BoardSnapshot.colorBytes(9), 4);
+    t.checkExpect(BoardSnapshot.floodedBytes(9), 2);
+    t.checkExpect(snapshot.bytes(), 30);
+
+    ByteBuffer buffer = ByteBuffer.allocate(2 * snapshot.bytes());
+    snapshot.writeTo(buffer);
+    t.checkExpect(buffer.position(), 30);
+    snapshot.writeTo(buffer);
+    buffer.flip();
+    t.checkExpect(BoardSnapshot.readFrom(buffer), snapshot);
+    t.checkExpect(buffer.position(), 30);
+    t.checkExpect(BoardSnapshot.readFrom(buffer), snapshot);
+    t.checkExpect(buffer.hasRemaining(), false);
+
+    // the colors are packed at 3 bits per cell from the lowest bit up
+    ByteBuffer packed = ByteBuffer.allocate(27);
+    new BoardSnapshot(2, 8, -1, 0, 4, 0, new byte[] { 1, 2, 7, 0 }, new BitSet()).writeTo(packed);
+    t.checkExpect(packed.position(), 27);
+    t.checkExpect(packed.get(6), (byte) -1);
+    t.checkExpect(packed.get(24), (byte) 0xD1);
+    t.checkExpect(packed.get(25), (byte) 0x01);
+    t.checkExpect(packed.get(26), (byte) 0);
+    packed.flip();
+    t.checkExpect(BoardSnapshot.readFrom(packed).floodColor, -1);
+
+    t.checkException(new IllegalArgumentException("Not a Flood It snapshot"), snapshot,
+        "readFrom", ByteBuffer.wrap(new byte[30]));
+    t.checkException(new IllegalArgumentException("Not a Flood It snapshot"), snapshot,
+        "readFrom", ByteBuffer.wrap(new byte[4]));
+    ByteBuffer wrongVersion = ByteBuffer.allocate(30);
+    snapshot.writeTo(wrongVersion);
+    wrongVersion.put(4, (byte) 9);
+    wrongVersion.flip();
+    t.checkException(new IllegalArgumentException("Unknown snapshot version"), snapshot,
+        "readFrom", wrongVersion);
+    ByteBuffer cut = ByteBuffer.allocate(30);
+    snapshot.writeTo(cut);
+    cut.flip();
+    cut.limit(29);
+    t.checkException(new IllegalArgumentException("The snapshot is cut short"), snapshot,
+        "readFrom", cut);
+
+    // a header with a size no board has is rejected before anything is allocated
+    for (int size : new int[] { 0, -3, 46341, BoardSnapshot.MAX_SIZE + 1 }) {
+      ByteBuffer badSize = ByteBuffer.allocate(30);
+      snapshot.writeTo(badSize);
+      badSize.putInt(8, size);
+      badSize.flip();
+      t.checkException(new IllegalArgumentException("Invalid snapshot board size " + size),
+          snapshot, "readFrom", badSize);
+      badSize.rewind();
+      t.checkException(new IllegalArgumentException("Invalid snapshot board size " + size),
+          snapshot, "read", Channels.newChannel(new ByteArrayInputStream(badSize.array())));
+    }
+    ByteBuffer badColors = ByteBuffer.allocate(30);
+    snapshot.writeTo(badColors);
+    badColors.put(6, (byte) 4);
+    badColors.flip();
+    t.checkException(new IllegalArgumentException("Invalid snapshot colors"), snapshot,
+        "readFrom", badColors);
+    t.checkExpect(BoardSnapshot.area(BoardSnapshot.MAX_SIZE), 268435456);
+    t.checkExpect(BoardSnapshot.colorBytes(BoardSnapshot.area(BoardSnapshot.MAX_SIZE)),
+        100663296);
+  }
+
+  // test the methods write, read, save, map, load and toGame in BoardSnapshot
+  // class
+  void testBoardSnapshotFiles(Tester t) {
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.game.move(0);
+    // the color wave has only recolored the top left cell
+    this.world2.startWave();
+    this.world2.onTick();
+    BoardSnapshot snapshot = BoardSnapshot.of(this.world2.game, 1);
+    BoardSnapshot other = BoardSnapshot.of(
+        new FloodItGame(FloodItGame.createBoard(4, 5, new Random(2), this.world1.colors), 5), 0);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      snapshot.write(Channels.newChannel(out));
+      other.write(Channels.newChannel(out));
+      ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+      t.checkExpect(BoardSnapshot.read(in), snapshot);
+      t.checkExpect(BoardSnapshot.read(in), other);
+      t.checkException(new EOFException("The snapshot is cut short"), snapshot, "read", in);
+
+      Path path = Files.createTempFile("floodit", ".snapshot");
+      BoardSnapshot.save(path, new ArrayList<BoardSnapshot>(Arrays.asList(snapshot, other)));
+      t.checkExpect(Files.size(path), (long) (snapshot.bytes() + other.bytes()));
+      t.checkExpect(BoardSnapshot.load(path),
+          new ArrayList<BoardSnapshot>(Arrays.asList(snapshot, other)));
+
+      // the world continues the saved game with the wave finished
+      this.world2.save(path);
+      this.initFloodIt();
+      this.world2.load(path);
+      t.checkExpect(this.world2.time, 1);
+      t.checkExpect(this.world2.game.clicks, 1);
+      t.checkExpect(this.world2.game.maxClicks, 3);
+      t.checkExpect(this.world2.game.floodColor, 0);
+      t.checkExpect(this.world2.game.board.colors, new byte[] { 0, 0, 0, 0, 1, 3, 1, 3, 1 });
+      t.checkExpect(this.world2.game.board.flooded, snapshot.flooded);
+      t.checkExpect(this.world2.game.regions.remainingRegions(), 5);
+      t.checkExpect(this.world2.worklist.isEmpty(), true);
+
+      // a game saved before it started is loaded without a hint to compute
+      new FloodItWorld(5, 3, 1).save(path);
+      FloodItWorld world = new FloodItWorld(5, 3, 2);
+      world.load(path);
+      t.checkExpect(world.game.regions, null);
+      t.checkExpect(world.game.board.colors, new FloodItWorld(5, 3, 1).game.board.colors);
+      t.checkExpect(world.hints.pending, null);
+      Files.delete(path);
+      t.checkException(
+          new IllegalStateException("Could not load the game from " + path,
+              new NoSuchFileException(path.toString())),
+          this.world2, "load", path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // test the methods generate, open, find and board in BoardCorpus class
+  void testBoardCorpus(Tester t) {
+    this.initFloodIt();
+    try {
+      Path path = Files.createTempFile("floodit", ".corpus");
+      BoardCorpus.generate(path, new int[] { 3, 2 }, new int[] { 4, 3 }, 5, 2, 2);
+      t.checkExpect(Files.size(path), 16L + 8 * 24 + 4 * (2 * 2) + 4 * (3 * 3));
+      BoardCorpus corpus = BoardCorpus.open(path);
+      t.checkExpect(corpus.count, 8);
+      t.checkExpect(corpus.find(2, 3, 5), 0);
+      t.checkExpect(corpus.find(2, 3, 6), 1);
+      t.checkExpect(corpus.find(2, 4, 5), 2);
+      t.checkExpect(corpus.find(3, 4, 5), 6);
+      t.checkExpect(corpus.find(3, 4, 6), 7);
+      t.checkExpect(corpus.find(3, 4, 7), -1);
+      t.checkExpect(corpus.find(4, 3, 5), -1);
+      t.checkExpect(corpus.compare(6, 3, 4, 5), 0);
+      t.checkExpect(corpus.compare(6, 3, 4, 6), -1);
+      t.checkExpect(corpus.compare(6, 2, 8, 9), 1);
+
+      // the boards are the ones of FloodItWorld(size, numColor, seed)
+      FloodItBoard board = corpus.board(3, 4, 5, this.world2.colors);
+      t.checkExpect(board.colors, this.world2.game.board.colors);
+      t.checkExpect(board.colorCounts, this.world2.game.board.colorCounts);
+      t.checkExpect(corpus.board(2, 3, 6, this.world2.colors).colors,
+          new FloodItWorld(2, 3, 6).game.board.colors);
+      t.checkException(
+          new IllegalArgumentException("The corpus has no board of size 3 with 5 colors and seed 5"),
+          corpus, "board", 3, 5, 5, this.world2.colors);
+
+      Files.write(path, new byte[16]);
+      t.checkConstructorException(new IllegalArgumentException("Not a Flood It corpus"),
+          "BoardCorpus", BoardSnapshot.map(path));
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
+  }
+
+  // test the method countColors in FloodItBoard class
+  void testCountColors(Tester t) {
+    this.initFloodIt();
+    FloodItBoard board = new FloodItBoard(3, this.world2.colors);
+    board.colors[4] = 2;
+    board.colors[5] = 2;
+    board.countColors();
+    t.checkExpect(board.colorCounts, new int[] { 7, 0, 2, 0, 0, 0, 0, 0 });
+    board.updateFlooded(5);
+    board.countColors();
+    t.checkExpect(board.colorCounts, new int[] { 7, 0, 1, 0, 0, 0, 0, 0 });
+  }
+
+  // test the methods append, end, bytes, writeTo, readFrom, load and streamTo
+  // in MoveLog class
+  void testMoveLog(Tester t) {
+    MoveLog log = new MoveLog(MoveLog.RANDOM_GENERATOR, 5, 3, 4, 3, 1);
+    t.checkExpect(log.bytes(), 32);
+    log.append(0, 0);
+    log.append(3, 1);
+    t.checkExpect(log.count, 2);
+    t.checkExpect(log.bytes(), 48);
+    ByteBuffer unfinished = ByteBuffer.allocate(log.bytes());
+    log.writeTo(unfinished);
+    unfinished.flip();
+    t.checkExpect(MoveLog.readFrom(unfinished).endTick, -1);
+    log.end(12, MoveLog.LOST);
+    t.checkExpect(log.bytes(), 56);
+    t.checkException(new IllegalStateException("The game of the log has ended"), log, "append",
+        13, 2);
+    t.checkException(new IllegalStateException("The game of the log has ended"), log, "end",
+        13, MoveLog.WON);
 
-    this.cell41 = new Cell(0, 0, Color.BLACK);
-    this.mtCell1 = new MtCell();
+    ByteBuffer buffer = ByteBuffer.allocate(2 * log.bytes());
+    log.writeTo(buffer);
+    log.writeTo(buffer);
+    t.checkExpect(buffer.getInt(48), 12);
+    t.checkExpect(buffer.get(52), (byte) -1);
+    t.checkExpect(buffer.get(53), (byte) MoveLog.LOST);
+    buffer.flip();
+    MoveLog read = MoveLog.readFrom(buffer);
+    t.checkExpect(buffer.position(), 56);
+    t.checkExpect(read.seed, 5L);
+    t.checkExpect(read.waveBatch, 1);
+    t.checkExpect(Arrays.copyOf(read.ticks, read.count), new int[] { 0, 3 });
+    t.checkExpect(Arrays.copyOf(read.colors, read.count), new byte[] { 0, 1 });
+    t.checkExpect(read.endTick, 12);
+    t.checkExpect(read.result, MoveLog.LOST);
+    t.checkExpect(MoveLog.readFrom(buffer).endTick, 12);
+    t.checkException(new IllegalArgumentException("Not a Flood It move log"), log, "readFrom",
+        ByteBuffer.wrap(new byte[32]));
+
+    // the entries are streamed as soon as they are appended
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MoveLog streamed = new MoveLog(MoveLog.RANDOM_GENERATOR, 5, 3, 4, 3, 1);
+    streamed.append(0, 0);
+    streamed.streamTo(Channels.newChannel(out));
+    t.checkExpect(out.size(), 40);
+    streamed.append(3, 1);
+    streamed.end(12, MoveLog.LOST);
+    t.checkExpect(out.toByteArray(), Arrays.copyOf(buffer.array(), 56));
   }
 
-  // test the method createBoard in FloodItWorld class
-  void testCreateBoard(Tester t) {
+  // test the methods waveTicks, replay and replayAll in ReplayEngine class,
+  // and the logging of FloodItWorld class
+  void testReplayEngine(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.world1.createBoard(2, 3), this.board1);
-    t.checkExpect(this.world1.createBoard(3, 4), this.board2);
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    this.world2.onMouseClicked(new Posn(10, 10));
+    for (int i = 0; i < 3; i = i + 1) {
+      this.world2.onTick();
+    }
+    this.world2.onMouseClicked(new Posn(30, 30));
+    for (int i = 0; i < 9; i = i + 1) {
+      this.world2.onTick();
+    }
+    this.world2.onMouseClicked(new Posn(50, 30));
+    for (int i = 0; i < 20; i = i + 1) {
+      this.world2.onTick();
+    }
+    MoveLog log = this.world2.log;
+    t.checkExpect(log.seed, 5L);
+    t.checkExpect(Arrays.copyOf(log.ticks, log.count), new int[] { 0, 3, 12 });
+    t.checkExpect(Arrays.copyOf(log.colors, log.count), new byte[] { 0, 1, 3 });
+    t.checkExpect(log.endTick, 21);
+    t.checkExpect(log.result, MoveLog.LOST);
+
+    ReplayEngine engine = new ReplayEngine(this.world2.colors);
+    t.checkExpect(ReplayEngine.waveTicks(log), 9);
+    t.checkExpect(ReplayEngine.waveTicks(new MoveLog(0, 5, 3, 4, 3, 0)), 5);
+    t.checkExpect(ReplayEngine.waveTicks(new MoveLog(0, 5, 3, 4, 3, 4)), 3);
+    t.checkExpect(engine.replay(log), new ReplayResult(3, MoveLog.LOST, 21, true));
+    t.checkExpect(engine.replay(new MoveLog(0, 5, 3, 4, 3, 1)),
+        new ReplayResult(0, MoveLog.PLAYING, -1, true));
+
+    // a log that does not match its replay is not verified
+    MoveLog late = new MoveLog(0, 5, 3, 4, 3, 1);
+    late.append(0, 0);
+    late.append(3, 1);
+    late.append(12, 3);
+    late.end(22, MoveLog.LOST);
+    t.checkExpect(engine.replay(late), new ReplayResult(3, MoveLog.LOST, 21, false));
+    MoveLog illegal = new MoveLog(0, 5, 3, 4, 3, 1);
+    illegal.append(0, 2);
+    t.checkExpect(engine.replay(illegal).verified, false);
+    MoveLog backwards = new MoveLog(0, 5, 3, 4, 3, 1);
+    backwards.append(4, 0);
+    backwards.append(3, 1);
+    t.checkExpect(engine.replay(backwards).verified, false);
+    t.checkException(new IllegalArgumentException("Unknown board generator 7"), engine,
+        "replay", new MoveLog(7, 5, 3, 4, 3, 1));
+
+    ArrayList<MoveLog> logs = new ArrayList<MoveLog>();
+    for (int i = 0; i < 40; i = i + 1) {
+      logs.add(log);
+      logs.add(late);
+    }
+    ArrayList<ReplayResult> results = engine.replayAll(logs, 2);
+    t.checkExpect(results.size(), 80);
+    t.checkExpect(results.get(38).verified, true);
+    t.checkExpect(results.get(79).verified, false);
+
+    // a reset starts a new log with a new seed
+    this.world2.onKeyEvent("r");
+    t.checkExpect(this.world2.log.count, 0);
+    t.checkExpect(this.world2.log.seed == 5, false);
+    t.checkExpect(engine.replay(this.world2.log).verified, true);
+    t.checkExpect(new FloodItGame(FloodItGame.createBoard(3, 4, new Random(this.world2.seed),
+        this.world2.colors), 4).board.colors, this.world2.game.board.colors);
+
+    // the logs are streamed to the end of a file
+    try {
+      Path path = Files.createTempFile("floodit", ".log");
+      this.world2.logTo(path);
+      this.world2.onKeyEvent("r");
+      this.world2.logChannel.close();
+      ArrayList<MoveLog> saved = MoveLog.load(path);
+      t.checkExpect(saved.size(), 2);
+      t.checkExpect(saved.get(0).result, MoveLog.PLAYING);
+      t.checkExpect(saved.get(0).endTick, 0);
+      t.checkExpect(saved.get(1).seed, this.world2.seed);
+      t.checkExpect(engine.replay(saved.get(0)).verified, true);
+      Files.delete(path);
+    }
+    catch (IOException e) {
+      t.checkExpect(e, null);
+    }
   }
 
-  // test the method connectCells in Cell class
-  void testCellConnectCells(Tester t) {
-    // test the top left corner
+  // test the class MoveDelta and the methods undo in FloodItBoard and
+  // RegionGraph classes
+  void testMoveDelta(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.cell21.left, null);
-    t.checkExpect(this.cell21.top, null);
-    t.checkExpect(this.cell21.right, null);
-    t.checkExpect(this.cell21.bottom, null);
-    this.cell21.connectCells(3, this.board2);
-    t.checkExpect(this.cell21.left, this.mtCell);
-    t.checkExpect(this.cell21.top, this.mtCell);
-    t.checkExpect(this.cell21.right, this.cell22);
-    t.checkExpect(this.cell21.bottom, this.cell24);
+    FloodItGame game = this.world2.game;
+    game.start();
+    FloodItGame fresh = new FloodItGame(new FloodItBoard(3, game.board.colors,
+        game.board.palette), 4);
+    fresh.start();
+    long hash = game.stateHash();
+    t.checkExpect(game.lastMove(), null);
+    game.move(0);
+    MoveDelta delta = game.lastMove();
+    t.checkExpect(delta.color, 0);
+    t.checkExpect(delta.previousColor, 2);
+    t.checkExpect(delta.cells, new int[] { 1, 2 });
+    t.checkExpect(delta.seeds, new int[] { 1 });
+    t.checkExpect(delta.frontierSizes, new int[] { 1, 2, 0, 0, 0, 0, 0, 0 });
+    t.checkExpect(delta.regions.length, 1);
+    // the wave recolors the flooded cells before the move is taken back
+    game.board.updateColor(1, 0);
+    game.board.updateColor(0, 0);
+    game.board.undo(delta);
+    game.regions.undo(delta);
+    game.board.updateColor(0, 2);
+    t.checkExpect(game.board.flooded, fresh.board.flooded);
+    t.checkExpect(game.board.colors, fresh.board.colors);
+    t.checkExpect(game.board.colorCounts, fresh.board.colorCounts);
+    t.checkExpect(game.board.floodedCount, 2);
+    t.checkExpect(game.board.inFrontier, fresh.board.inFrontier);
+    t.checkExpect(game.board.frontierSize, fresh.board.frontierSize);
+    t.checkExpect(game.board.queueSize, 0);
+    t.checkExpect(game.regions.hash, hash);
+    t.checkExpect(game.regions.flooded, fresh.regions.flooded);
+    t.checkExpect(game.regions.floodedCells, 2);
+    t.checkExpect(game.regions.floodColor, 2);
+    t.checkExpect(game.regions.inFrontier, fresh.regions.inFrontier);
+    t.checkExpect(game.regions.frontierSize, fresh.regions.frontierSize);
+  }
 
-    // test the top right corner
+  // test the methods redo, play and lastMove in FloodItGame class
+  void testRedo(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.cell23.left, null);
-    t.checkExpect(this.cell23.top, null);
-    t.checkExpect(this.cell23.right, null);
-    t.checkExpect(this.cell23.bottom, null);
-    this.cell23.connectCells(3, this.board2);
-    t.checkExpect(this.cell23.left, this.cell22);
-    t.checkExpect(this.cell23.top, this.mtCell);
-    t.checkExpect(this.cell23.right, this.mtCell);
-    t.checkExpect(this.cell23.bottom, this.cell26);
+    FloodItGame game = this.world2.game;
+    game.start();
+    t.checkExpect(game.redo(), false);
+    game.move(0);
+    game.move(1);
+    long hash = game.stateHash();
+    game.undo();
+    game.undo();
+    t.checkExpect(game.redoCount, 2);
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.floodColor, 0);
+    t.checkExpect(game.redo(), true);
+    t.checkExpect(game.stateHash(), hash);
+    t.checkExpect(game.clicks, 2);
+    t.checkExpect(game.board.floodedCount, 6);
+    t.checkExpect(game.redo(), false);
+    game.undo();
+    t.checkExpect(game.play(1), true);
+    t.checkExpect(game.redoCount, 1);
+    game.undo();
+    t.checkExpect(game.move(3), true);
+    t.checkExpect(game.redoCount, 0);
+    t.checkExpect(game.lastMove().color, 3);
+  }
 
-    // test the bottom left corner
+  // test the methods undo and redo in FloodItWorld class
+  void testWorldUndo(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.cell27.left, null);
-    t.checkExpect(this.cell27.top, null);
-    t.checkExpect(this.cell27.right, null);
-    t.checkExpect(this.cell27.bottom, null);
-    this.cell27.connectCells(3, this.board2);
-    t.checkExpect(this.cell27.left, this.mtCell);
-    t.checkExpect(this.cell27.top, this.cell24);
-    t.checkExpect(this.cell27.right, this.cell28);
-    t.checkExpect(this.cell27.bottom, this.mtCell);
+    this.world2.startGame();
+    this.world2.makeScene();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    for (int i = 0; i < 9; i = i + 1) {
+      this.world2.onTick();
+    }
+    t.checkExpect(this.world2.game.board.colorAt(1), 0);
+    t.checkExpect(this.world2.game.board.colorAt(0), 0);
+    this.world2.makeScene();
+    this.world2.onKeyEvent("z");
+    t.checkExpect(this.world2.game.clicks, 0);
+    t.checkExpect(this.world2.floodColor(), Color.GREEN);
+    t.checkExpect(this.world2.renderer.dirty.toArray(), new int[] { 1, 2 });
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 0 });
+    for (int i = 0; i < 9; i = i + 1) {
+      this.world2.onTick();
+    }
+    t.checkExpect(this.world2.game.board.colors, new FloodItWorld(3, 4, 5).game.board.colors);
+    this.world2.onKeyEvent("z");
+    t.checkExpect(this.world2.log.count, 2);
+    this.world2.onKeyEvent("y");
+    t.checkExpect(this.world2.game.clicks, 1);
+    t.checkExpect(this.world2.floodColor(), Color.RED);
+    t.checkExpect(Arrays.copyOf(this.world2.log.colors, this.world2.log.count),
+        new byte[] { 0, MoveLog.UNDO, 0 });
+    t.checkExpect(new ReplayEngine(this.world2.colors).replay(this.world2.log),
+        new ReplayResult(1, MoveLog.PLAYING, -1, true));
+    MoveLog undoFirst = new MoveLog(0, 5, 3, 4, 3, 1);
+    undoFirst.append(0, MoveLog.UNDO);
+    t.checkExpect(new ReplayEngine(this.world2.colors).replay(undoFirst).verified, false);
+  }
 
-    // test the bottom right corner
-    this.initFloodIt();
-    t.checkExpect(this.cell29.left, null);
-    t.checkExpect(this.cell29.top, null);
-    t.checkExpect(this.cell29.right, null);
-    t.checkExpect(this.cell29.bottom, null);
-    this.cell29.connectCells(3, this.board2);
-    t.checkExpect(this.cell29.left, this.cell28);
-    t.checkExpect(this.cell29.top, this.cell26);
-    t.checkExpect(this.cell29.right, this.mtCell);
-    t.checkExpect(this.cell29.bottom, this.mtCell);
+  // test the strategies and the tournament runner
+  void testTournament(Tester t) {
+    FloodItGame game = new FloodItGame(FloodItGame.createBoard(6, 3, new Random(0),
+        FloodItGame.defaultColors()), 3);
+    game.start();
+    IMoveStrategy cycle = new CycleStrategy();
+    t.checkExpect(cycle.nextMove(game), (game.floodColor + 1) % 3);
+    t.checkExpect(cycle.copy(), cycle);
+    t.checkExpect(FloodItGame.calMaxClicks(6, 3), 6);
+    t.checkExpect(FloodItGame.calMaxClicks(14, 6), 28);
 
-    // test the top middle cell
-    this.initFloodIt();
-    t.checkExpect(this.cell22.left, null);
-    t.checkExpect(this.cell22.top, null);
-    t.checkExpect(this.cell22.right, null);
-    t.checkExpect(this.cell22.bottom, null);
-    this.cell22.connectCells(3, this.board2);
-    t.checkExpect(this.cell22.left, this.cell21);
-    t.checkExpect(this.cell22.top, this.mtCell);
-    t.checkExpect(this.cell22.right, this.cell23);
-    t.checkExpect(this.cell22.bottom, this.cell25);
+    Tournament tournament = new Tournament(6, 3, 50, 0, 2);
+    t.checkExpect(tournament.maxClicks(), 6);
+    t.checkExpect(tournament.play(cycle, 0), 4);
+    t.checkExpect(tournament.play(cycle, 1), 6);
+    TournamentResult result = tournament.run(cycle);
+    t.checkExpect(result.name, "cycle");
+    t.checkExpect(result.games, 50);
+    t.checkExpect(result.wins, 25);
+    t.checkExpect(result.forfeits, 0);
+    t.checkExpect(Arrays.copyOf(result.moveCounts, 11),
+        new int[] { 0, 0, 0, 0, 3, 7, 15, 12, 10, 1, 2 });
+    t.checkInexact(result.winRate(), 0.5, 0.0001);
+    t.checkInexact(result.meanMoves(), 6.6, 0.0001);
+    t.checkExpect(result.percentile(0.5), 6);
+    t.checkExpect(result.percentile(0.9), 8);
+    t.checkExpect(result.nanos > 0, true);
+    // the games are the same whatever the number of threads
+    TournamentResult serial = new Tournament(6, 3, 50, 0, 1).run(cycle);
+    t.checkExpect(serial.moveCounts, result.moveCounts);
+    t.checkExpect(new Tournament(6, 3, 50, 0, 3).runAll(Tournament.strategies()).get(0).wins,
+        25);
 
-    // test the bottom middle cell
-    this.initFloodIt();
-    t.checkExpect(this.cell28.left, null);
-    t.checkExpect(this.cell28.top, null);
-    t.checkExpect(this.cell28.right, null);
-    t.checkExpect(this.cell28.bottom, null);
-    this.cell28.connectCells(3, this.board2);
-    t.checkExpect(this.cell28.left, this.cell27);
-    t.checkExpect(this.cell28.top, this.cell25);
-    t.checkExpect(this.cell28.right, this.cell29);
-    t.checkExpect(this.cell28.bottom, this.mtCell);
+    // a strategy that plays the flood color forfeits its games
+    IMoveStrategy stuck = new IMoveStrategy() {
+      public String name() {
+        return "stuck";
+      }
 
-    // test the left border middle cell
+      public int nextMove(FloodItGame game) {
+        return game.floodColor;
+      }
+
+      public IMoveStrategy copy() {
+        return this;
+      }
+    };
+    TournamentResult forfeited = tournament.run(stuck);
+    t.checkExpect(forfeited.forfeits, 50);
+    t.checkExpect(forfeited.wins, 0);
+    t.checkExpect(forfeited.percentile(0.5), -1);
+    t.checkExpect(Double.isNaN(forfeited.meanMoves()), true);
+
+    // the report has no move counts for a strategy that flooded no game
+    TournamentResult none = new TournamentResult("stuck");
+    none.add(-1, 4);
+    none.add(-1, 4);
+    none.nanos = 1000000000L;
+    t.checkExpect(none.format(),
+        "stuck                   2        2.0    0.000        2      n/a    n/a    n/a    n/a");
+    none.add(5, 4);
+    t.checkExpect(none.format(),
+        "stuck                   3        3.0    0.000        2     5.00      5      5      5");
+
+    TournamentResult merged = new TournamentResult("cycle");
+    merged.add(3, 4);
+    merged.add(5, 4);
+    merged.add(-1, 4);
+    merged.add(40, 4);
+    t.checkExpect(merged.games, 4);
+    t.checkExpect(merged.wins, 1);
+    t.checkExpect(merged.forfeits, 1);
+    t.checkExpect(merged.moveCounts.length, 41);
+    merged.merge(result);
+    t.checkExpect(merged.games, 54);
+    t.checkExpect(merged.moveCounts[6], 15);
+    t.checkExpect(merged.moveCounts[40], 1);
+  }
+
+  // test the built-in strategies
+  void testMoveStrategies(Tester t) {
+    FloodItGame game = new FloodItGame(FloodItGame.createBoard(4, 3, new Random(939),
+        FloodItGame.defaultColors()), 3);
+    game.start();
+    // the board is 1100 / 2011 / 2202 / 1010, flooded from the top left cell
+    t.checkExpect(game.regions.gain(0), 3);
+    t.checkExpect(game.regions.gain(1), 0);
+    t.checkExpect(game.regions.gain(2), 3);
+    t.checkExpect(GreedyStrategy.mostCells(game.regions), 0);
+    t.checkExpect(new GreedyStrategy().nextMove(game), 0);
+    t.checkExpect(new EliminationStrategy().nextMove(game), 0);
+    t.checkExpect(new LookaheadStrategy(1).nextMove(game), 0);
+    t.checkExpect(new LookaheadStrategy(2).nextMove(game), 2);
+    t.checkConstructorException(new IllegalArgumentException("Invalid depth, the minimum is 1"),
+        "LookaheadStrategy", 0);
+
+    // after the moves 0 and 1, every 2 left is next to the flooded area
+    game.move(0);
+    game.move(1);
+    t.checkExpect(game.regions.gain(2), 4);
+    t.checkExpect(game.remaining(2), 4);
+    t.checkExpect(GreedyStrategy.mostCells(game.regions), 2);
+    t.checkExpect(new EliminationStrategy().nextMove(game), 2);
+
+    // a strategy keeps its search state from move to move, but not its copies
+    LookaheadStrategy lookahead = new LookaheadStrategy(3);
+    t.checkExpect(lookahead.nextMove(game), lookahead.nextMove(game));
+    t.checkExpect(lookahead.solver.graph, game.regions);
+    t.checkExpect(((LookaheadStrategy) lookahead.copy()).solver, null);
+    t.checkExpect(lookahead.copy().name(), "lookahead-3");
+
+    Tournament tournament = new Tournament(4, 3, 1, 939, 1);
+    t.checkExpect(tournament.play(new GreedyStrategy(), 0), 7);
+    t.checkExpect(tournament.play(new EliminationStrategy(), 0), 6);
+    t.checkExpect(tournament.play(new LookaheadStrategy(2), 0), 5);
+    ArrayList<TournamentResult> results = new Tournament(8, 5, 40, 0, 2)
+        .runAll(Tournament.strategies());
+    t.checkExpect(results.size(), 5);
+    t.checkExpect(results.get(4).name, "lookahead-3");
+    t.checkExpect(results.get(1).meanMoves() < results.get(0).meanMoves(), true);
+    t.checkExpect(results.get(4).meanMoves() < results.get(1).meanMoves(), true);
+  }
+
+  // test the demo mode of FloodItWorld
+  void testDemoMode(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.cell24.left, null);
-    t.checkExpect(this.cell24.top, null);
-    t.checkExpect(this.cell24.right, null);
-    t.checkExpect(this.cell24.bottom, null);
-    this.cell24.connectCells(3, this.board2);
-    t.checkExpect(this.cell24.left, this.mtCell);
-    t.checkExpect(this.cell24.top, this.cell21);
-    t.checkExpect(this.cell24.right, this.cell25);
-    t.checkExpect(this.cell24.bottom, this.cell27);
+    this.world2.startGame();
+    this.world2.onKeyEvent("b");
+    t.checkExpect(this.world2.bot.name(), "lookahead-2");
+    this.world2.onTick();
+    t.checkExpect(this.world2.game.clicks, 1);
+    t.checkExpect(this.world2.log.ticks[0], 1);
+    t.checkExpect(this.world2.worklist.isEmpty(), false);
+    // the bot waits for the wave of its move to finish
+    this.world2.onTick();
+    t.checkExpect(this.world2.game.clicks, 1);
+    for (int i = 0; i < 40; i = i + 1) {
+      this.world2.onTick();
+    }
+    // the board needs 4 moves, one more than its maxClicks
+    t.checkExpect(this.world2.game.clicks, 3);
+    t.checkExpect(Arrays.copyOf(this.world2.log.ticks, this.world2.log.count),
+        new int[] { 1, 10, 19 });
+    t.checkExpect(this.world2.log.endTick, 28);
+    t.checkExpect(this.world2.log.result, MoveLog.LOST);
+    t.checkExpect(new ReplayEngine(this.world2.colors).replay(this.world2.log).verified, true);
+    this.world2.onKeyEvent("b");
+    t.checkExpect(this.world2.bot, null);
+    // an illegal move of a bot is ignored
+    this.world2.move(this.world2.game.floodColor);
+    t.checkExpect(this.world2.log.count, this.world2.game.clicks);
+  }
 
-    // test the right border middle cell
+  // EFFECT: to wait for the hint being computed by the given service, if any
+  void awaitHint(HintService hints) {
+    try {
+      if (hints.pending != null) {
+        hints.pending.get();
+      }
+    }
+    catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // test the background hint service
+  void testHintService(Tester t) {
+    FloodItGame game = new FloodItGame(FloodItGame.createBoard(4, 3, new Random(939),
+        FloodItGame.defaultColors()), 3);
+    game.start();
+    HintService hints = new HintService();
+    t.checkExpect(hints.hint(game), -1);
+    hints.request(game);
+    this.awaitHint(hints);
+    int best = new FloodItSolver(game.regions, 3, 1000000, 1000).solve().moves[0];
+    t.checkExpect(hints.hint(game), best);
+    // a known hint is not computed again
+    hints.request(game);
+    t.checkExpect(hints.pending, null);
+
+    // a request for a newer state cancels the older one
+    game.move(best);
+    hints.request(game);
+    Future<?> older = hints.pending;
+    game.move(GreedyStrategy.mostCells(game.regions));
+    hints.request(game);
+    t.checkExpect(older.isDone(), true);
+    this.awaitHint(hints);
+    t.checkExpect(hints.hint(game) >= 0, true);
+    t.checkExpect(hints.hint(game) != game.floodColor, true);
+
+    // the hints of another board are forgotten, and late ones are dropped
+    FloodItGame other = new FloodItGame(FloodItGame.createBoard(4, 3, new Random(939),
+        FloodItGame.defaultColors()), 3);
+    other.start();
+    other.deriveMaxClicks();
+    t.checkExpect(hints.hint(other), -1);
+    hints.offer(game.regions.regionOf, other.stateHash(), 1);
+    t.checkExpect(hints.hint(other), -1);
+    // the hint for the start of a game comes from the solution of its maxClicks
+    hints.request(other);
+    t.checkExpect(hints.pending, null);
+    t.checkExpect(hints.hint(other), other.solution.moves[0]);
+
+    // the copy of a graph shares its regions but not its flooded area
+    RegionGraph copy = new RegionGraph(game.regions);
+    t.checkExpect(copy.regionOf == game.regions.regionOf, true);
+    t.checkExpect(copy.hash, game.regions.hash);
+    copy.flood(GreedyStrategy.mostCells(copy));
+    t.checkExpect(copy.floodedCells > game.regions.floodedCells, true);
+    t.checkExpect(copy.hash == game.regions.hash, false);
+
+    // an interrupted search stops early
+    FloodItGame big = new FloodItGame(FloodItGame.createBoard(30, 6, new Random(1),
+        FloodItGame.defaultColors()), 6);
+    big.start();
+    Thread.currentThread().interrupt();
+    SolverResult result = new FloodItSolver(big.regions, 6, 100000000, 100000).solve();
+    t.checkExpect(Thread.interrupted(), true);
+    t.checkExpect(result.optimal, false);
+    t.checkExpect(result.nodes, 0L);
+
+    // a cancelled hint on a large board frees the thread well before its budget
+    big = new FloodItGame(FloodItGame.createBoard(150, 6, new Random(1),
+        FloodItGame.defaultColors()), 6);
+    big.start();
+    hints.request(big);
+    try {
+      Thread.sleep(50);
+    }
+    catch (InterruptedException e) {
+      t.checkExpect(e, null);
+    }
+    FloodItGame small = new FloodItGame(FloodItGame.createBoard(4, 3, new Random(7),
+        FloodItGame.defaultColors()), 3);
+    small.start();
+    long start = System.nanoTime();
+    hints.request(small);
+    this.awaitHint(hints);
+    t.checkNumRange((System.nanoTime() - start) / 1000000, 0L, 100L);
+    t.checkExpect(hints.hint(small) >= 0, true);
+  }
+
+  // test the hints of FloodItWorld
+  void testWorldHint(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.cell26.left, null);
-    t.checkExpect(this.cell26.top, null);
-    t.checkExpect(this.cell26.right, null);
-    t.checkExpect(this.cell26.bottom, null);
-    this.cell26.connectCells(3, this.board2);
-    t.checkExpect(this.cell26.left, this.cell25);
-    t.checkExpect(this.cell26.top, this.cell23);
-    t.checkExpect(this.cell26.right, this.mtCell);
-    t.checkExpect(this.cell26.bottom, this.cell29);
+    this.world2.startGame();
+    this.world2.onKeyEvent("h");
+    t.checkExpect(this.world2.showHint, true);
+    this.awaitHint(this.world2.hints);
+    int hint = this.world2.hints.hint(this.world2.game);
+    t.checkExpect(hint >= 0, true);
+    this.world2.onMouseClicked(new Posn(30, 10));
+    this.awaitHint(this.world2.hints);
+    t.checkExpect(this.world2.hints.hint(this.world2.game) >= 0, true);
+    this.world2.makeScene();
+    this.world2.onKeyEvent("z");
+    t.checkExpect(this.world2.hints.hint(this.world2.game), hint);
+    this.world2.onKeyEvent("h");
+    t.checkExpect(this.world2.showHint, false);
+    t.checkExpect(this.world2.hints.pending, null);
 
-    // test the middle cell
+    // no hint is computed while the hints are hidden or the bot plays
     this.initFloodIt();
-    t.checkExpect(this.cell25.left, null);
-    t.checkExpect(this.cell25.top, null);
-    t.checkExpect(this.cell25.right, null);
-    t.checkExpect(this.cell25.bottom, null);
-    this.cell25.connectCells(3, this.board2);
-    t.checkExpect(this.cell25.left, this.cell24);
-    t.checkExpect(this.cell25.top, this.cell22);
-    t.checkExpect(this.cell25.right, this.cell26);
-    t.checkExpect(this.cell25.bottom, this.cell28);
-  }
-
-  // test the method connectCells in FloodItWorld class
-  void testFloodItWorldConnectCells(Tester t) {
-    this.initFloodIt();
-    t.checkExpect(this.world2.board.get(0).get(0).left, null);
-    t.checkExpect(this.world2.board.get(0).get(0).top, null);
-    t.checkExpect(this.world2.board.get(0).get(0).right, null);
-    t.checkExpect(this.world2.board.get(0).get(0).bottom, null);
-    t.checkExpect(this.world2.board.get(0).get(1).left, null);
-    t.checkExpect(this.world2.board.get(0).get(1).top, null);
-    t.checkExpect(this.world2.board.get(0).get(1).right, null);
-    t.checkExpect(this.world2.board.get(0).get(1).bottom, null);
-    t.checkExpect(this.world2.board.get(1).get(1).left, null);
-    t.checkExpect(this.world2.board.get(1).get(1).top, null);
-    t.checkExpect(this.world2.board.get(1).get(1).right, null);
-    t.checkExpect(this.world2.board.get(1).get(1).bottom, null);
-    this.world2.connectCells(3);
-    t.checkExpect(this.world2.board.get(0).get(0).left, this.mtCell);
-    t.checkExpect(this.world2.board.get(0).get(0).top, this.mtCell);
-    t.checkExpect(this.world2.board.get(0).get(0).right, this.world2.board.get(0).get(1));
-    t.checkExpect(this.world2.board.get(0).get(0).bottom, this.world2.board.get(1).get(0));
-    t.checkExpect(this.world2.board.get(0).get(1).left, this.world2.board.get(0).get(0));
-    t.checkExpect(this.world2.board.get(0).get(1).top, this.mtCell);
-    t.checkExpect(this.world2.board.get(0).get(1).right, this.world2.board.get(0).get(2));
-    t.checkExpect(this.world2.board.get(0).get(1).bottom, this.world2.board.get(1).get(1));
-    t.checkExpect(this.world2.board.get(1).get(1).left, this.world2.board.get(1).get(0));
-    t.checkExpect(this.world2.board.get(1).get(1).top, this.world2.board.get(0).get(1));
-    t.checkExpect(this.world2.board.get(1).get(1).right, this.world2.board.get(1).get(2));
-    t.checkExpect(this.world2.board.get(1).get(1).bottom, this.world2.board.get(2).get(1));
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    t.checkExpect(this.world2.hints.pending, null);
+    this.world2.onKeyEvent("r");
+    t.checkExpect(this.world2.hints.pending, null);
+    this.world2.onKeyEvent("h");
+    this.world2.onKeyEvent("b");
+    t.checkExpect(this.world2.hints.pending, null);
+    this.world2.onTick();
+    t.checkExpect(this.world2.game.clicks, 1);
+    t.checkExpect(this.world2.hints.pending, null);
+    this.world2.onKeyEvent("b");
+    t.checkExpect(this.world2.hints.pending != null
+        || this.world2.hints.hint(this.world2.game) >= 0, true);
+    this.awaitHint(this.world2.hints);
+
+    // every world computes its hints on the same thread
+    t.checkExpect(HintService.executor(this.world2.hints)
+        == HintService.executor(new HintService()), true);
   }
 
-  // test the method calMaxClicks in FloodItWorld class
-  void testCalMaxClicks(Tester t) {
+  // test the latency histograms of the metrics
+  void testLatencyHistogram(Tester t) {
+    t.checkExpect(LatencyHistogram.bucket(0), 0);
+    t.checkExpect(LatencyHistogram.bucket(15), 15);
+    t.checkExpect(LatencyHistogram.bucket(16), 16);
+    t.checkExpect(LatencyHistogram.bucket(31), 31);
+    t.checkExpect(LatencyHistogram.bucket(32), 32);
+    t.checkExpect(LatencyHistogram.bucket(33), 32);
+    t.checkExpect(LatencyHistogram.bucket(1000), 111);
+    t.checkExpect(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.BUCKETS - 1);
+    t.checkExpect(LatencyHistogram.lowest(32), 32L);
+    t.checkExpect(LatencyHistogram.lowest(111), 992L);
+    t.checkExpect(LatencyHistogram.lowest(112), 1024L);
+    for (int i = 0; i < LatencyHistogram.BUCKETS; i = i + 1) {
+      t.checkExpect(LatencyHistogram.bucket(LatencyHistogram.lowest(i)), i);
+    }
+
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    t.checkExpect(histogram.count(), 0L);
+    t.checkInexact(histogram.mean(), 0.0, 0.0001);
+    t.checkExpect(histogram.percentile(0.5), 0L);
+    for (int i = 1; i <= 100; i = i + 1) {
+      histogram.record(i * 10);
+    }
+    histogram.record(-5);
+    t.checkExpect(histogram.count(), 101L);
+    t.checkInexact(histogram.mean(), 50500.0 / 101, 0.0001);
+    t.checkExpect(histogram.max(), 1000L);
+    // the percentiles are within 1/16 of the latencies recorded
+    t.checkExpect(histogram.percentile(0.5), 511L);
+    t.checkExpect(histogram.percentile(0.99), 991L);
+    t.checkExpect(histogram.percentile(0.01), 10L);
+    histogram.record(Long.MAX_VALUE);
+    t.checkExpect(histogram.percentile(1.0), Long.MAX_VALUE);
+
+    // the metrics are off unless the program runs with -Dfloodit.metrics=true
+    t.checkExpect(Metrics.ENABLED, false);
+    t.checkExpect(Metrics.start(), 0L);
+    long clicks = Metrics.CLICK.count();
+    long ticks = Metrics.TICK.count();
     this.initFloodIt();
-    t.checkExpect(this.world2.calMaxClicks(3, 4), 3);
-    t.checkExpect(this.world2.calMaxClicks(3, 5), 3);
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    this.world2.onTick();
+    t.checkExpect(Metrics.CLICK.count(), clicks);
+    t.checkExpect(Metrics.TICK.count(), ticks);
+    Metrics.TICK.stop(0);
+    t.checkExpect(Metrics.TICK.count(), ticks);
   }
 
-  // test the method drawCell in Cell class
-  void testDrawCell(Tester t) {
-    this.initFloodIt();
-    t.checkExpect(this.cell11.drawCell(),
-        new RectangleImage(20, 20, OutlineMode.SOLID, Color.GREEN));
-    t.checkExpect(this.cell12.drawCell(),
-        new RectangleImage(20, 20, OutlineMode.SOLID, Color.YELLOW));
+  // test the JMX view and the dump of the metrics
+  void testMetricsMBean(Tester t) {
+    LatencyHistogram histogram = new LatencyHistogram("onTick");
+    histogram.record(100);
+    histogram.record(300);
+    MetricCounter counter = new MetricCounter("waveSteps");
+    counter.add(7);
+    counter.add(2);
+    t.checkExpect(counter.count(), 9L);
+    ArrayList<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>(
+        Arrays.asList(histogram));
+    ArrayList<MetricCounter> counters = new ArrayList<MetricCounter>(Arrays.asList(counter));
+    MetricsMBean bean = new MetricsMBean(histograms, counters);
+    t.checkExpect(bean.getMBeanInfo().getAttributes().length, 7);
+    t.checkExpect(bean.getMBeanInfo().getAttributes()[5].getName(), "onTick.max");
+    t.checkExpect(bean.getMBeanInfo().getAttributes()[1].getType(), "double");
+    t.checkExpect(bean.getAttributes(new String[] { "onTick.count", "onTick.max", "waveSteps",
+      "onTick.p42", "none" }).toString(), "[onTick.count = 2, onTick.max = 300, waveSteps = 9]");
+    t.checkExpect(bean.getAttributes(new String[] { "onTick.mean" }).asList().get(0).getValue(),
+        200.0);
+    t.checkException(new AttributeNotFoundException("No metric onTick.p42"), bean,
+        "getAttribute", "onTick.p42");
+    t.checkException(new AttributeNotFoundException("The metrics are read-only"), bean,
+        "setAttribute", new Attribute("waveSteps", 0L));
+
+    String report = Metrics.report(histograms, counters);
+    t.checkExpect(report.split(System.lineSeparator()).length, 3);
+    t.checkExpect(report.split(System.lineSeparator())[1], histogram.format());
+    t.checkExpect(report.split(System.lineSeparator())[2].trim().replaceAll(" +", " "),
+        "waveSteps 9");
+    try {
+      Path dir = Files.createTempDirectory("floodit");
+      Path path = dir.resolve("metrics.txt");
+      new MetricsDump(histograms, counters, path).run();
+      t.checkExpect(new String(Files.readAllBytes(path), "UTF-8"), report);
+      histogram.record(500);
+      new MetricsDump(histograms, counters, path).run();
+      t.checkExpect(new String(Files.readAllBytes(path), "UTF-8"),
+          Metrics.report(histograms, counters));
+      t.checkExpect(Files.exists(dir.resolve("metrics.txt.tmp")), false);
+      Files.delete(path);
+      Files.delete(dir);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
-  // test the method makeScene in FloodItWorld class
-  void testMakeScene(Tester t) {
+  // test the bitboard flood engine against the frontier one
+  void testBitboardFloodEngine(Tester t) {
+    t.checkExpect(BitboardFloodEngine.fillUp(0b0111_0110L, 0b0000_0100L), 0b0000_0100L);
+    t.checkExpect(BitboardFloodEngine.fillUp(0b0111_0110L, 0b0001_0010L), 0b0111_0110L);
+    t.checkExpect(BitboardFloodEngine.fillUp(-1L, 1L << 62), 3L << 62);
+
+    // boards narrower than a word, and wider than two
+    int[] sizes = new int[] { 1, 5, 64, 130 };
+    for (int i = 0; i < sizes.length; i = i + 1) {
+      FloodItGame frontier = new FloodItGame(FloodItGame.createBoard(sizes[i], 4,
+          new Random(i), FloodItGame.defaultColors()), 4);
+      FloodItGame bitboard = new FloodItGame(FloodItGame.createBoard(sizes[i], 4,
+          new Random(i), FloodItGame.defaultColors()), 4);
+      bitboard.useEngine(new BitboardFloodEngine());
+      frontier.start();
+      bitboard.start();
+      t.checkExpect(bitboard.engine.name(), "bitboard");
+      t.checkExpect(bitboard.board.flooded, frontier.board.flooded);
+      int moves = 0;
+      while (!frontier.allFlooded()) {
+        int color = GreedyStrategy.mostCells(frontier.regions);
+        frontier.move(color);
+        bitboard.move(color);
+        moves = moves + 1;
+        // take every third move back and make it again
+        if (moves % 3 == 0) {
+          frontier.undo();
+          bitboard.undo();
+          t.checkExpect(bitboard.board.flooded, frontier.board.flooded);
+          frontier.redo();
+          bitboard.redo();
+        }
+        t.checkExpect(bitboard.board.flooded, frontier.board.flooded);
+        t.checkExpect(bitboard.board.floodedCount, frontier.board.floodedCount);
+        t.checkExpect(bitboard.board.colorCounts, frontier.board.colorCounts);
+      }
+      t.checkExpect(bitboard.allFlooded(), true);
+    }
+
+    FloodItGame game = new FloodItGame(FloodItGame.createBoard(4, 3, new Random(939),
+        FloodItGame.defaultColors()), 3);
+    game.start();
+    t.checkException(new IllegalStateException("The game has already started"), game,
+        "useEngine", new BitboardFloodEngine());
+
+    // the world switches the engine from the next game on
     this.initFloodIt();
-    WorldScene bg = new WorldScene(310, 120);
-    bg.placeImageXY(this.cell31.drawCell(), 10, 10);
-    bg.placeImageXY(this.cell32.drawCell(), 30, 10);
-    bg.placeImageXY(this.cell33.drawCell(), 50, 10);
-    bg.placeImageXY(this.cell34.drawCell(), 10, 30);
-    bg.placeImageXY(this.cell35.drawCell(), 30, 30);
-    bg.placeImageXY(this.cell36.drawCell(), 50, 30);
-    bg.placeImageXY(this.cell37.drawCell(), 10, 50);
-    bg.placeImageXY(this.cell38.drawCell(), 30, 50);
-    bg.placeImageXY(this.cell39.drawCell(), 50, 50);
-    bg.placeImageXY(new TextImage("Clicks: " + Integer.toString(0) + "/" + Integer.toString(3), 20,
-        Color.BLACK), 185, 20);
-    bg.placeImageXY(new TextImage("Time: " + Integer.toString(0), 20, Color.BLACK), 185, 50);
-    bg.placeImageXY(new TextImage("Press the ‘r’ key to reset the game ", 16, Color.BLACK), 155,
-        90);
-    t.checkExpect(this.world2.makeScene(), bg);
+    this.world2.onKeyEvent("e");
+    this.world2.startGame();
+    t.checkExpect(this.world2.game.engine.name(), "bitboard");
+    this.world2.onMouseClicked(new Posn(30, 10));
+    t.checkExpect(this.world2.game.clicks, 1);
+    this.world2.onKeyEvent("e");
+    this.world2.onKeyEvent("r");
+    t.checkExpect(this.world2.game.engine.name(), "frontier");
+  }
+
+  // test the kernels of ColorKernels class and the method sameColors in
+  // FloodItBoard class
+  void testColorKernels(Tester t) {
+    t.checkExpect(ColorKernels.matches(0x0002000100020100L, 2), 0x0080000000800000L);
+    t.checkExpect(ColorKernels.matches(0x0002000100020100L, 0), 0x8000800080000080L);
+    t.checkExpect(ColorKernels.matches(0x0002000100020100L, 7), 0L);
+
+    byte[] colors = new byte[] { 2, 0, 2, 1, 2, 2, 0, 0, 1, 2, 2 };
+    t.checkExpect(ColorKernels.colorMask(colors, 0, 11, 2), 0b110_0011_0101L);
+    t.checkExpect(ColorKernels.colorMask(colors, 1, 10, 2), 0b11_0001_1010L);
+    t.checkExpect(ColorKernels.colorMask(colors, 0, 0, 2), 0L);
+    t.checkExpect(ColorKernels.colorMaskScalar(colors, 0, 11, 0), 0b1100_0010L);
+    int[] counts = new int[3];
+    ColorKernels.histogram(colors, 0, 11, counts);
+    t.checkExpect(counts, new int[] { 3, 2, 6 });
+    ColorKernels.histogram(colors, 8, 11, counts);
+    t.checkExpect(counts, new int[] { 3, 3, 8 });
+
+    // the kernels agree with the scalar ones on every length and color
+    Random rand = new Random(3);
+    byte[] cells = new byte[200];
+    for (int i = 0; i < cells.length; i = i + 1) {
+      cells[i] = (byte) rand.nextInt(8);
+    }
+    for (int from = 0; from < 9; from = from + 1) {
+      for (int color = 0; color < 8; color = color + 1) {
+        t.checkExpect(ColorKernels.colorMask(cells, from * 7, 64 - from, color),
+            ColorKernels.colorMaskScalar(cells, from * 7, 64 - from, color));
+      }
+    }
+    byte[] copy = cells.clone();
+    t.checkExpect(ColorKernels.equal(cells, copy, 200), true);
+    copy[199] = (byte) (copy[199] + 1);
+    t.checkExpect(ColorKernels.equal(cells, copy, 200), false);
+    t.checkExpect(ColorKernels.equal(cells, copy, 199), true);
+    t.checkExpect(ColorKernels.equalScalar(cells, copy, 200), false);
+    t.checkExpect(ColorKernels.equalScalar(cells, copy, 199), true);
+
+    FloodItBoard board = FloodItGame.createBoard(9, 4, new Random(5),
+        FloodItGame.defaultColors());
+    FloodItBoard same = FloodItGame.createBoard(9, 4, new Random(5),
+        FloodItGame.defaultColors());
+    t.checkExpect(board.sameColors(same), true);
+    t.checkExpect(board.sameColors(FloodItGame.createBoard(9, 4, new Random(6),
+        FloodItGame.defaultColors())), false);
+    t.checkExpect(board.sameColors(new FloodItBoard(8, board.colors, board.palette)), false);
+    // the flooded cells are not counted
+    int[] before = board.colorCounts.clone();
+    board.updateFlooded(0);
+    board.updateFlooded(1);
+    int[] after = board.colorCounts.clone();
+    t.checkExpect(after[board.colorAt(0)] < before[board.colorAt(0)], true);
+    board.countColors();
+    t.checkExpect(board.colorCounts, after);
+
+    HistogramBenchmark histogram = new HistogramBenchmark();
+    histogram.prepare(14, 3);
+    t.checkExpect(histogram.run(), (long) histogram.board.remaining(0));
+    ColorMaskBenchmark mask = new ColorMaskBenchmark(false);
+    ColorMaskBenchmark maskScalar = new ColorMaskBenchmark(true);
+    mask.prepare(70, 5);
+    maskScalar.prepare(70, 5);
+    t.checkExpect(mask.run(), maskScalar.run());
+    SameColorsBenchmark equal = new SameColorsBenchmark(false);
+    equal.prepare(14, 3);
+    t.checkExpect(equal.run(), 1L);
+  }
+
+  // test the method generateBoard in FloodItGame class, the RowTask class and
+  // the boards of the splittable generator in FloodItWorld and ReplayEngine
+  void testGenerateBoard(Tester t) {
+    FloodItBoard board = FloodItGame.generateBoard(300, 3, 42, FloodItGame.defaultColors());
+    t.checkExpect(board.sameColors(FloodItGame.generateBoard(300, 3, 42,
+        FloodItGame.defaultColors())), true);
+    t.checkExpect(board.sameColors(FloodItGame.generateBoard(300, 3, 43,
+        FloodItGame.defaultColors())), false);
+    t.checkExpect(board.remaining(0) + board.remaining(1) + board.remaining(2), 90000);
+    for (int color = 0; color < 3; color = color + 1) {
+      t.checkNumRange(board.remaining(color), 29000, 31000);
+    }
+    // the board does not depend on the threads drawing it
+    FloodItBoard drawn = new FloodItBoard(300, FloodItGame.defaultColors());
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      pool.invoke(new RowTask(drawn, 3, new SplittableRandom(42), 0, 300));
+    }
+    finally {
+      pool.shutdown();
+    }
+    t.checkExpect(drawn.sameColors(board), true);
+    FloodItBoard serial = new FloodItBoard(300, FloodItGame.defaultColors());
+    new RowTask(serial, 3, new SplittableRandom(42), 0, 300).compute();
+    t.checkExpect(serial.sameColors(board), true);
+    FloodItBoard small = FloodItGame.generateBoard(5, 8, 1, FloodItGame.defaultColors());
+    t.checkExpect(small.remaining(0) + small.remaining(7) <= 25, true);
+
+    // the world draws its boards with the splittable generator, and logs it
+    FloodItWorld world = new FloodItWorld(6, 4);
+    t.checkExpect(world.generator, MoveLog.SPLITTABLE_GENERATOR);
+    t.checkExpect(world.log.generator, MoveLog.SPLITTABLE_GENERATOR);
+    t.checkExpect(world.game.board.sameColors(FloodItGame.generateBoard(6, 4, world.seed,
+        world.colors)), true);
+    world.onKeyEvent("r");
+    t.checkExpect(world.game.board.sameColors(FloodItGame.generateBoard(6, 4, world.seed,
+        world.colors)), true);
+    world.move(GreedyStrategy.mostCells(world.game.regions));
+    t.checkExpect(new ReplayEngine(world.colors).board(world.log).sameColors(
+        FloodItGame.generateBoard(6, 4, world.seed, world.colors)), true);
+    t.checkExpect(new ReplayEngine(world.colors).replay(world.log).clicks, 1);
+  }
+
+  // test the topologies and the boards, region graphs and games on them
+  void testTopologies(Tester t) {
+    int[] out = new int[6];
+    ITopology grid = new GridTopology(2, 3);
+    t.checkExpect(grid.neighbors(4, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] { 3, 1, 5 });
+    t.checkExpect(grid.forward(4, out), 1);
+    t.checkExpect(out[0], 5);
+    t.checkExpect(grid.forward(0, out), 2);
+    t.checkExpect(Arrays.copyOf(out, 2), new int[] { 1, 3 });
+    t.checkExpect(grid.withSize(4, 5).rows(), 4);
+    t.checkExpect(grid.isGrid(), true);
+
+    ITopology torus = new TorusTopology(3, 3);
+    t.checkExpect(torus.neighbors(0, out), 4);
+    t.checkExpect(Arrays.copyOf(out, 4), new int[] { 2, 6, 1, 3 });
+    t.checkExpect(torus.forward(0, out), 4);
+    t.checkExpect(torus.forward(8, out), 0);
+    t.checkExpect(torus.isGrid(), false);
+    t.checkExpect(torus.withSize(2, 7).name(), "torus");
+    // a torus too small to wrap around has no duplicate or self neighbors
+    ITopology narrow = new TorusTopology(2, 3);
+    t.checkExpect(narrow.neighbors(1, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] { 0, 4, 2 });
+    t.checkExpect(narrow.forward(4, out), 1);
+    t.checkExpect(out[0], 5);
+    ITopology line = new TorusTopology(1, 2);
+    t.checkExpect(line.neighbors(0, out), 1);
+    t.checkExpect(out[0], 1);
+    t.checkExpect(new TorusTopology(1, 1).neighbors(0, out), 0);
+    t.checkExpect(new RegionGraph(new FloodItBoard(narrow, new byte[] { 0, 1, 0, 1, 0, 1 },
+        FloodItGame.defaultColors())).count, 4);
+
+    ITopology hex = new HexTopology(3, 3);
+    t.checkExpect(hex.degree(), 6);
+    t.checkExpect(hex.neighbors(4, out), 6);
+    t.checkExpect(out, new int[] { 3, 5, 1, 2, 7, 8 });
+    t.checkExpect(hex.neighbors(3, out), 5);
+    t.checkExpect(Arrays.copyOf(out, 5), new int[] { 4, 0, 1, 6, 7 });
+    t.checkExpect(hex.neighbors(0, out), 2);
+    t.checkExpect(Arrays.copyOf(out, 2), new int[] { 1, 3 });
+    t.checkExpect(hex.forward(3, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] { 4, 6, 7 });
+
+    // the corners of a torus are adjacent through its edges
+    byte[] cross = new byte[] { 0, 1, 0, 1, 1, 1, 0, 1, 0 };
+    ArrayList<Color> palette = FloodItGame.defaultColors();
+    t.checkExpect(new RegionGraph(new FloodItBoard(grid.withSize(3, 3), cross, palette)).count,
+        5);
+    FloodItGame game = new FloodItGame(new FloodItBoard(torus, cross, palette), 2);
+    game.start();
+    t.checkExpect(game.regions.count, 2);
+    t.checkExpect(game.board.floodedCount, 4);
+    t.checkExpect(game.board.adjToFlooded(4), false);
+    t.checkExpect(game.board.adjToFlooded(1), true);
+    t.checkExpect(game.move(1), true);
+    t.checkExpect(game.allFlooded(), true);
+
+    // a hexagon touches the one below it on the left or on the right
+    byte[] diagonal = new byte[] { 1, 0, 1, 0, 1, 1, 1, 1, 1 };
+    t.checkExpect(new RegionGraph(new FloodItBoard(grid.withSize(3, 3), diagonal, palette))
+        .count, 4);
+    RegionGraph graph = new RegionGraph(new FloodItBoard(hex, diagonal, palette));
+    t.checkExpect(graph.count, 3);
+    t.checkExpect(graph.regionOf, new int[] { 0, 1, 2, 1, 2, 2, 2, 2, 2 });
+    t.checkExpect(graph.adj, new int[] { 1, 0, 2, 1 });
+
+    // games on every topology are played and solved to the end
+    ITopology[] topologies = new ITopology[] { new GridTopology(12, 40),
+        new TorusTopology(20, 24), new HexTopology(22, 22) };
+    for (int i = 0; i < topologies.length; i = i + 1) {
+      FloodItGame played = new FloodItGame(FloodItGame.createBoard(topologies[i], 4,
+          new Random(i), palette), 4);
+      played.start();
+      played.deriveMaxClicks();
+      for (int move : played.solution.moves) {
+        played.move(move);
+      }
+      t.checkExpect(played.allFlooded(), true);
+      t.checkExpect(played.isWon(), true);
+      played.undo();
+      t.checkExpect(played.allFlooded(), false);
+    }
+
+    // the bitboard engine floods rectangular grids as the frontier engine does
+    FloodItGame frontier = new FloodItGame(FloodItGame.createBoard(new GridTopology(3, 130), 3,
+        new Random(4), palette), 3);
+    FloodItGame bitboard = new FloodItGame(FloodItGame.createBoard(new GridTopology(3, 130), 3,
+        new Random(4), palette), 3);
+    bitboard.useEngine(new BitboardFloodEngine());
+    frontier.start();
+    bitboard.start();
+    while (!frontier.allFlooded()) {
+      int color = GreedyStrategy.mostCells(frontier.regions);
+      frontier.move(color);
+      bitboard.move(color);
+      t.checkExpect(bitboard.board.flooded, frontier.board.flooded);
+    }
+    t.checkException(new IllegalArgumentException("The bitboard engine only floods grid boards"),
+        new BitboardFloodEngine(), "start", new FloodItBoard(hex, palette));
+    FloodItGame square = new FloodItGame(FloodItGame.createBoard(3, 3, new Random(4), palette),
+        3);
+    square.start();
+    t.checkException(new IllegalArgumentException("Only games on square grids can be saved"),
+        BoardSnapshot.of(square, 0), "of", frontier, 0);
+
+    TopologyFloodBenchmark benchmark = new TopologyFloodBenchmark("hexFlood",
+        new HexTopology(1, 1), 2);
+    benchmark.prepare(14, 3);
+    benchmark.setUp();
+    t.checkExpect(benchmark.game.board.topology.rows(), 28);
+    t.checkExpect(benchmark.game.board.area(), 196);
+    t.checkExpect(benchmark.run() > 0, true);
+    t.checkExpect(benchmark.game.allFlooded(), true);
   }
 
   // test the method updateFlooded in Cell class
@@ -704,28 +6944,27 @@ class ExamplesFloodIt {
   // test the method startGame in FloodItWorld class
   void testStartGame(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
-    t.checkExpect(this.world2.floodColor, null);
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+    t.checkExpect(this.world2.floodColor(), null);
     this.world2.startGame();
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
-    t.checkExpect(this.world2.floodColor, Color.GREEN);
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+    t.checkExpect(this.world2.floodColor(), Color.GREEN);
   }
 
   // test the method flooded in Cell class
@@ -762,128 +7001,618 @@ class ExamplesFloodIt {
     t.checkExpect(this.cell39.floodedICell(), false);
   }
 
-  // test the method adjToFlooded in Cell class
+  // test the method adjToFlooded in FloodItBoard and Cell class
   void testAdjToFlooded(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
     this.world2.startGame();
 
-    t.checkExpect(this.world2.board.get(0).get(1).adjToFlooded(), true);
-    t.checkExpect(this.world2.board.get(2).get(0).adjToFlooded(), true);
-    t.checkExpect(this.world2.board.get(0).get(2).adjToFlooded(), false);
-    t.checkExpect(this.world2.board.get(2).get(2).adjToFlooded(), false);
+    t.checkExpect(this.world2.game.board.adjToFlooded(this.world2.game.board.index(0, 1)), true);
+    t.checkExpect(this.world2.game.board.adjToFlooded(this.world2.game.board.index(2, 0)), true);
+    t.checkExpect(this.world2.game.board.adjToFlooded(this.world2.game.board.index(0, 2)), false);
+    t.checkExpect(this.world2.game.board.adjToFlooded(this.world2.game.board.index(2, 2)), false);
+
+    this.initFloodIt();
+    this.cell22.connectCells(3, this.board2);
+    t.checkExpect(this.cell22.adjToFlooded(), false);
+    this.cell21.updateFlooded();
+    t.checkExpect(this.cell22.adjToFlooded(), true);
+  }
+
+  // test the benchmarks and the methods parse and measure in FloodItBenchmark
+  // class
+  void testFloodItBenchmark(Tester t) {
+    FloodItBenchmark bench = new FloodItBenchmark();
+    t.checkExpect(FloodItBenchmark.parse("14, 256,4096"), new int[] { 14, 256, 4096 });
+    t.checkExpect(bench.benchmarks.size(), 16);
+    t.checkExpect(bench.benchmarks.get(2).fits(1024), true);
+    t.checkExpect(bench.benchmarks.get(2).fits(4096), false);
+    t.checkExpect(bench.benchmarks.get(0).fits(4096), true);
+
+    FloodBenchmark flood = new FloodBenchmark();
+    flood.prepare(14, 3);
+    flood.setUp();
+    t.checkExpect(flood.game.allFlooded(), false);
+    t.checkExpect(flood.run() > 0, true);
+    t.checkExpect(flood.game.allFlooded(), true);
+    t.checkExpect(flood.board.floodedCount, 0);
+
+    FloodBenchmark bitboard = new BitboardFloodBenchmark();
+    bitboard.prepare(14, 3);
+    bitboard.setUp();
+    t.checkExpect(bitboard.name, "bitboardFlood");
+    t.checkExpect(bitboard.game.engine.name(), "bitboard");
+    flood.setUp();
+    t.checkExpect(bitboard.run(), flood.run());
+
+    WaveBenchmark wave = new WaveBenchmark();
+    wave.prepare(14, 3);
+    wave.setUp();
+    t.checkExpect(wave.world.worklist.isEmpty(), false);
+    wave.run();
+    t.checkExpect(wave.world.worklist.isEmpty(), true);
+    t.checkExpect(wave.world.game.board.colorAt(0), wave.world.game.floodColor);
+
+    AllFloodedBenchmark flooded = new AllFloodedBenchmark();
+    flooded.prepare(14, 3);
+    BenchmarkResult result = bench.measure(flooded, 0);
+    t.checkExpect(result.name, "allFlooded");
+    t.checkExpect(result.operations, 3072L);
+    t.checkExpect(new BenchmarkResult("flood", 14, 3, 4, 100, 8).nanosPerOperation(), 25.0);
+    t.checkExpect(new BenchmarkResult("flood", 14, 3, 4, 100, 8).bytesPerOperation(), 2.0);
+    t.checkExpect(new BenchmarkResult("flood", 14, 3, 4, 100, 8).format(),
+        "flood                    14      3          4             25.0              2.0");
+  }
+
+  // test the methods move, click, undo, isWon and isLost in FloodItGame class
+  void testFloodItGame(Tester t) {
+    this.initFloodIt();
+    FloodItGame game = this.world2.game;
+    FloodItGame other = new FloodItGame(
+        new FloodItBoard(3, game.board.colors, this.world2.colors), 4);
+    game.start();
+    other.start();
+    t.checkExpect(game.floodColor, 2);
+    t.checkExpect(game.maxClicks, 3);
+    t.checkExpect(game.move(2), false);
+    t.checkExpect(game.move(7), false);
+    t.checkExpect(game.click(0), false);
+    t.checkExpect(game.clicks, 0);
+    t.checkExpect(game.undo(), false);
+    t.checkExpect(game.move(0), true);
+    t.checkExpect(game.click(4), true);
+    t.checkExpect(game.board.floodedCount, 6);
+    t.checkExpect(game.isLost(), false);
+    t.checkExpect(game.move(3), true);
+    t.checkExpect(game.clicks, 3);
+    t.checkExpect(game.allFlooded(), false);
+    t.checkExpect(game.isLost(), true);
+    t.checkExpect(game.isWon(), false);
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.clicks, 2);
+    t.checkExpect(game.moveCount, 2);
+    t.checkExpect(game.floodColor, 1);
+    t.checkExpect(game.board.floodedCount, 6);
+    t.checkExpect(game.board.colorAt(0), 2);
+    t.checkExpect(game.isLost(), false);
+    t.checkExpect(game.move(1), false);
+    other.move(0);
+    other.move(1);
+    t.checkExpect(game.stateHash(), other.stateHash());
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.undo(), true);
+    t.checkExpect(game.undo(), false);
+    t.checkExpect(game.clicks, 0);
+    t.checkExpect(game.board.floodedCount, 2);
+    game.maxClicks = 4;
+    game.move(0);
+    game.move(1);
+    game.move(3);
+    t.checkExpect(game.isWon(), false);
+    game.move(1);
+    t.checkExpect(game.allFlooded(), true);
+    t.checkExpect(game.isWon(), true);
+    t.checkExpect(game.isLost(), false);
+    t.checkExpect(game.remaining(1), 0);
+  }
+
+  // test the method createBoard in FloodItGame class
+  void testFloodItGameCreateBoard(Tester t) {
+    this.initFloodIt();
+    FloodItBoard board = FloodItGame.createBoard(3, 4, new Random(5),
+        FloodItGame.defaultColors());
+    t.checkExpect(board.colors, this.world2.game.board.colors);
+    t.checkExpect(new FloodItBoard(3, board.colors, board.palette).colorCounts,
+        new int[] { 2, 3, 2, 2, 0, 0, 0, 0 });
   }
 
-  // test the method floodedAdjSameColor in FloodItWorld class
+  // test the method floodedAdjSameColor in FloodItGame class
   void testFloodedAdjSameColor(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
     this.world2.startGame();
-    this.world2.floodColor = Color.RED;
-
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
-    this.world2.floodedAdjSameColor();
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
+
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+    this.world2.game.floodedAdjSameColor(0);
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+  }
+
+  // test the method floodStart in FloodItBoard class
+  void testFloodStart(Tester t) {
+    this.initFloodIt();
+    FloodItBoard board = new FloodItBoard(this.board2, this.world1.colors);
+    board.floodStart();
+    t.checkExpect(board.isFlooded(0), true);
+    t.checkExpect(board.isFlooded(1), false);
+    t.checkExpect(board.queueSize, 1);
+    // the frontier holds the two orange neighbors of the top left cell
+    t.checkExpect(board.frontierSize[3], 2);
+    t.checkExpect(board.frontierSize[1], 0);
+  }
+
+  // test the method flood in FloodItBoard class
+  void testFlood(Tester t) {
+    this.initFloodIt();
+    // G Y R
+    // G Y R
+    // R R R
+    FloodItBoard board = new FloodItBoard(new ArrayList<ArrayList<Cell>>(Arrays.asList(
+        new ArrayList<Cell>(Arrays.asList(new Cell(0, 0, Color.GREEN), new Cell(0, 1, Color.YELLOW),
+            new Cell(0, 2, Color.RED))),
+        new ArrayList<Cell>(Arrays.asList(new Cell(1, 0, Color.GREEN), new Cell(1, 1, Color.YELLOW),
+            new Cell(1, 2, Color.RED))),
+        new ArrayList<Cell>(Arrays.asList(new Cell(2, 0, Color.RED), new Cell(2, 1, Color.RED),
+            new Cell(2, 2, Color.RED))))),
+        this.world1.colors);
+    board.floodStart();
+    t.checkExpect(board.flooded.cardinality(), 2);
+    // the red cells on the right are only reached through the bottom row
+    t.checkExpect(board.flood(0), 5);
+    t.checkExpect(board.isFlooded(board.index(0, 2)), true);
+    t.checkExpect(board.isFlooded(board.index(1, 2)), true);
+    t.checkExpect(board.isFlooded(board.index(0, 1)), false);
+    t.checkExpect(board.frontierSize[0], 0);
+    t.checkExpect(board.frontierSize[1], 2);
+    t.checkExpect(board.flood(1), 2);
+    t.checkExpect(board.flooded.cardinality(), 9);
+    t.checkExpect(board.flood(2), 0);
+  }
+
+  // test the method rebuildFrontier in FloodItBoard class
+  void testRebuildFrontier(Tester t) {
+    this.initFloodIt();
+    FloodItBoard board = new FloodItBoard(this.board2, this.world1.colors);
+    board.updateFlooded(0);
+    board.updateFlooded(1);
+    board.rebuildFrontier();
+    t.checkExpect(board.frontierSize[1], 2);
+    t.checkExpect(board.frontierSize[3], 1);
+    t.checkExpect(board.inFrontier.cardinality(), 3);
+  }
+
+  // test the constructor of RegionGraph class
+  void testRegionGraph(Tester t) {
+    this.initFloodIt();
+    // Y O Y
+    // O Y Y
+    // G O Y
+    RegionGraph graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    t.checkExpect(graph.count, 6);
+    t.checkExpect(graph.regionOf, new int[] { 0, 1, 2, 3, 2, 2, 4, 5, 2 });
+    t.checkExpect(graph.sizes, new int[] { 1, 1, 4, 1, 1, 1 });
+    t.checkExpect(graph.colors, new byte[] { 1, 3, 1, 3, 2, 3 });
+    t.checkExpect(graph.adjStart, new int[] { 0, 2, 4, 7, 10, 12, 14 });
+    t.checkExpect(graph.adj, new int[] { 1, 3, 0, 2, 1, 3, 5, 0, 2, 4, 3, 5, 2, 4 });
+    t.checkExpect(graph.degree(2), 3);
+    t.checkExpect(graph.neighbor(2, 2), 5);
+  }
+
+  // test the method flood in RegionGraph class
+  void testRegionGraphFlood(Tester t) {
+    this.initFloodIt();
+    RegionGraph graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph.floodStart();
+    t.checkExpect(graph.floodedCells, 1);
+    t.checkExpect(graph.frontierSize[3], 2);
+    t.checkExpect(graph.flood(3), 2);
+    t.checkExpect(graph.isFlooded(3), true);
+    t.checkExpect(graph.isFlooded(4), false);
+    t.checkExpect(graph.flood(1), 4);
+    t.checkExpect(graph.remainingRegions(), 2);
+    t.checkExpect(graph.flood(3), 1);
+    t.checkExpect(graph.flood(2), 1);
+    t.checkExpect(graph.floodedCells, 9);
+    t.checkExpect(graph.remainingRegions(), 0);
+
+    // the world merges its regions as it floods
+    this.initFloodIt();
+    this.world2.startGame();
+    t.checkExpect(this.world2.game.regions.floodedCells, 2);
+    this.world2.onMouseClicked(new Posn(30, 10));
+    t.checkExpect(this.world2.game.regions.floodedCells, this.world2.game.board.floodedCount);
+    t.checkExpect(this.world2.game.regions.remainingRegions(), 5);
+  }
+
+  // test the method solve in FloodItSolver class
+  void testFloodItSolver(Tester t) {
+    this.initFloodIt();
+    RegionGraph graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph.floodStart();
+    SolverResult result = new FloodItSolver(graph, 4, 1000, 1000).solve();
+    t.checkExpect(result.clicks(), 4);
+    t.checkExpect(result.optimal, true);
+    for (int i = 0; i < result.clicks(); i = i + 1) {
+      graph.flood(result.moves[i]);
+    }
+    t.checkExpect(graph.floodedCells, 9);
+
+    // the solver starts from the flooded area of the graph
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(10, 50));
+    result = new FloodItSolver(this.world2.game.regions, 4, 1000, 1000).solve();
+    t.checkExpect(result.moves, new int[] { 0, 3, 1 });
+    t.checkExpect(result.optimal, true);
+
+    // with no nodes to spend, the greedy solution is returned
+    graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph.floodStart();
+    result = new FloodItSolver(graph, 4, 0, 1000).solve();
+    t.checkExpect(result.optimal, false);
+    t.checkExpect(result.clicks(), 4);
+
+    // the time budget holds on large boards, which keep the greedy solution
+    for (int size = 100; size <= 300; size = size + 200) {
+      FloodItWorld world = new FloodItWorld(size, 6, 1);
+      world.startGame();
+      long start = System.nanoTime();
+      result = new FloodItSolver(world.game.regions, 6, 2000000, 250).solve();
+      t.checkNumRange((System.nanoTime() - start) / 1000000, 0L, 1000L);
+      t.checkExpect(result.optimal, false);
+      for (int i = 0; i < result.moves.length; i = i + 1) {
+        world.game.regions.flood(result.moves[i]);
+      }
+      t.checkExpect(world.game.regions.remainingRegions(), 0);
+    }
+
+    // a deadline that cuts the greedy moves short bounds the moves left
+    FloodItWorld world = new FloodItWorld(300, 6, 1);
+    world.startGame();
+    result = new FloodItSolver(world.game.regions, 6, 2000000, 0).solve();
+    t.checkExpect(result.optimal, false);
+    t.checkExpect(result.moves.length, 1);
+    world.game.regions.flood(result.moves[0]);
+    FloodItSolver rest = new FloodItSolver(world.game.regions, 6, 0, 0);
+    rest.reset();
+    t.checkNumRange(rest.greedy(Long.MAX_VALUE).length + 1, 2, result.clicks() + 1);
+  }
+
+  // test the method solve in ParallelFloodItSolver class
+  void testParallelFloodItSolver(Tester t) {
+    this.initFloodIt();
+    RegionGraph graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph.floodStart();
+    SolverResult result = new ParallelFloodItSolver(graph, 4, 100000, 1000, 2).solve();
+    t.checkExpect(result.clicks(), 4);
+    t.checkExpect(result.optimal, true);
+
+    // the parallel search finds as few moves as the sequential one
+    FloodItWorld world = new FloodItWorld(7, 4, 3);
+    world.startGame();
+    SolverResult sequential = new FloodItSolver(world.game.regions, 4, 10000000, 10000).solve();
+    result = new ParallelFloodItSolver(world.game.regions, 4, 10000000, 10000, 4).solve();
+    t.checkExpect(sequential.optimal, true);
+    t.checkExpect(result.optimal, true);
+    t.checkExpect(result.clicks(), sequential.clicks());
+    for (int i = 0; i < result.clicks(); i = i + 1) {
+      world.game.regions.flood(result.moves[i]);
+    }
+    t.checkExpect(world.game.regions.remainingRegions(), 0);
+
+    // a deadline that cuts the greedy moves short bounds the moves left
+    world = new FloodItWorld(300, 6, 1);
+    world.startGame();
+    result = new ParallelFloodItSolver(world.game.regions, 6, 10000000, 0, 2).solve();
+    t.checkExpect(result.optimal, false);
+    t.checkExpect(result.moves.length, 1);
+    t.checkExpect(result.clicks(),
+        new FloodItSolver(world.game.regions, 6, 10000000, 0).solve().clicks());
+  }
+
+  // test the class TranspositionTable
+  void testTranspositionTable(Tester t) {
+    TranspositionTable table = new TranspositionTable(8);
+    t.checkExpect(table.keys.length, 8);
+    t.checkExpect(table.probe(0x10L), -1);
+    table.store(0x10L, 5);
+    t.checkExpect(table.probe(0x10L), 5);
+    // a state in the same bucket reached in fewer moves takes the first slot
+    table.store(0x20L, 3);
+    t.checkExpect(table.probe(0x20L), 3);
+    t.checkExpect(table.probe(0x10L), 5);
+    // a state reached in more moves only replaces the second slot
+    table.store(0x30L, 9);
+    t.checkExpect(table.probe(0x30L), 9);
+    t.checkExpect(table.probe(0x10L), -1);
+    t.checkExpect(table.probe(0x20L), 3);
+    t.checkExpect(table.replacements, 1L);
+    t.checkExpect(table.visit(0x20L, 4), false);
+    t.checkExpect(table.visit(0x20L, 2), true);
+    t.checkExpect(table.probe(0x20L), 2);
+    t.checkExpect(table.hits, 8L);
+    t.checkExpect(table.misses, 2L);
+    t.checkInexact(table.hitRate(), 0.8, 0.001);
+    table.clear();
+    t.checkExpect(table.probe(0x20L), -1);
+  }
+
+  // test the Zobrist hash of RegionGraph and FloodItSolver class
+  void testZobristHash(Tester t) {
+    this.initFloodIt();
+    // the same flooded area reached in two orders has the same hash
+    RegionGraph graph1 = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    RegionGraph graph2 = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph1.floodStart();
+    graph2.floodStart();
+    long start = graph1.hash;
+    graph1.flood(3);
+    graph1.flood(2);
+    graph1.flood(1);
+    graph2.flood(3);
+    graph2.flood(1);
+    t.checkExpect(graph1.hash == graph2.hash, false);
+    graph2.flood(2);
+    graph2.flood(1);
+    t.checkExpect(graph1.hash, graph2.hash);
+    t.checkExpect(graph1.hash == start, false);
+
+    // the solver keeps the same hash as the graph through its moves and undos
+    RegionGraph graph3 = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph3.floodStart();
+    FloodItSolver solver = new FloodItSolver(graph3, 4, 1000, 1000);
+    solver.reset();
+    t.checkExpect(solver.hash, start);
+    solver.apply(3, 0);
+    graph3.flood(3);
+    t.checkExpect(solver.hash, graph3.hash);
+    solver.undo(3, 0);
+    t.checkExpect(solver.hash, start);
+    t.checkExpect(solver.floodColor, 1);
+
+    this.world2.startGame();
+    t.checkExpect(this.world2.game.stateHash(), this.world2.game.regions.hash);
+  }
+
+  // test the method visit in SharedTable class
+  void testSharedTable(Tester t) {
+    SharedTable table = new SharedTable(100);
+    t.checkExpect(table.slots.length(), 128);
+    t.checkExpect(table.visit(0x123450000L, 5), true);
+    t.checkExpect(table.visit(0x123450000L, 5), false);
+    t.checkExpect(table.visit(0x123450000L, 6), false);
+    t.checkExpect(table.visit(0x123450000L, 3), true);
+    // another state in the same slot replaces the entry
+    t.checkExpect(table.visit(0x987650000L, 7), true);
+    t.checkExpect(table.visit(0x123450000L, 4), true);
+  }
+
+  // test the methods greedy and maxDistance in FloodItSolver class
+  void testSolverHeuristics(Tester t) {
+    this.initFloodIt();
+    RegionGraph graph = new RegionGraph(new FloodItBoard(this.board2, this.world1.colors));
+    graph.floodStart();
+    FloodItSolver solver = new FloodItSolver(graph, 4, 1000, 1000);
+    solver.reset();
+    t.checkExpect(solver.colorsLeft, 3);
+    t.checkExpect(solver.maxDistance(), 3);
+    t.checkExpect(solver.eliminatingColor(), -1);
+    t.checkExpect(solver.gain(3), 2);
+    solver.apply(3, 0);
+    t.checkExpect(solver.eliminatingColor(), 1);
+    solver.undo(3, 0);
+    t.checkExpect(solver.gain(3), 2);
+    t.checkExpect(solver.remaining, new int[] { 0, 1, 1, 3 });
+    t.checkExpect(solver.greedy(Long.MAX_VALUE), new int[] { 3, 1, 2, 3 });
+    t.checkExpect(solver.colorsLeft, 0);
+  }
+
+  // test the method deriveMaxClicks in FloodItWorld class
+  void testDeriveMaxClicks(Tester t) {
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.game.deriveMaxClicks();
+    t.checkExpect(this.world2.game.maxClicks, 4);
+    t.checkExpect(this.world2.game.solution.optimal, true);
+    this.world2.onMouseClicked(new Posn(10, 50));
+    this.world2.game.deriveMaxClicks();
+    t.checkExpect(this.world2.game.maxClicks, 4);
   }
 
   // test the method onMouseClicked in FloodItWorld class
   void testOnMouseClicked(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
     this.world2.startGame();
 
-    t.checkExpect(this.world2.floodColor, Color.GREEN);
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
-    t.checkExpect(this.world2.worklist, new ArrayList<Cell>());
-    t.checkExpect(this.world2.clicks, 0);
+    t.checkExpect(this.world2.floodColor(), Color.GREEN);
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+    t.checkExpect(this.world2.worklist.isEmpty(), true);
+    t.checkExpect(this.world2.game.clicks, 0);
     this.world2.onMouseClicked(new Posn(30, 10));
-    t.checkExpect(this.world2.floodColor, Color.RED);
-    t.checkExpect(this.world2.board.get(0).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(1).flooded, true);
-    t.checkExpect(this.world2.board.get(0).get(2).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(0).flooded, true);
-    t.checkExpect(this.world2.board.get(1).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(1).get(2).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(0).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(1).flooded, false);
-    t.checkExpect(this.world2.board.get(2).get(2).flooded, false);
-    t.checkExpect(this.world2.worklist,
-        new ArrayList<Cell>(Arrays.asList(this.world2.board.get(0).get(0))));
-    t.checkExpect(this.world2.clicks, 1);
+    t.checkExpect(this.world2.floodColor(), Color.RED);
+    t.checkExpect(this.world2.game.board.cellAt(0, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 1).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).flooded, true);
+    t.checkExpect(this.world2.game.board.cellAt(1, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(1, 2).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 0).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 1).flooded, false);
+    t.checkExpect(this.world2.game.board.cellAt(2, 2).flooded, false);
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 0 });
+    t.checkExpect(this.world2.game.clicks, 1);
+
+    // clicks beside or below the board do nothing
+    this.world2.onMouseClicked(new Posn(70, 30));
+    this.world2.onMouseClicked(new Posn(10, 70));
+    this.world2.onMouseClicked(new Posn(-5, 10));
+    t.checkExpect(this.world2.floodColor(), Color.RED);
+    t.checkExpect(this.world2.game.clicks, 1);
+    t.checkExpect(this.world2.game.board.indexAt(70, 30, 20), -1);
+    t.checkExpect(this.world2.game.board.indexAt(10, 70, 20), -1);
+    t.checkExpect(this.world2.game.board.indexAt(59, 45, 20), 8);
   }
 
-  // test the method addIfNotMtCellAndContained in FloodItWorld class
-  void testAddIfNotMtCellAndContained(Tester t) {
+  // test the method addToWorklist in FloodItWorld class
+  void testAddToWorklist(Tester t) {
     this.initFloodIt();
-    t.checkExpect(this.world2.worklist, new ArrayList<Cell>());
-    this.world2.addIfNotMtCellAndContained(this.cell41);
-    t.checkExpect(this.world2.worklist, new ArrayList<Cell>(Arrays.asList((Cell) this.cell41)));
+    t.checkExpect(this.world2.worklist.isEmpty(), true);
+    this.world2.addToWorklist(4);
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 4 });
+    this.world2.addToWorklist(4);
+    this.world2.addToWorklist(2);
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 4, 2 });
+    this.world2.worklist.remove();
+    this.world2.addToWorklist(4);
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 2 });
+  }
+
+  // test the class IntQueue
+  void testIntQueue(Tester t) {
+    IntQueue queue = new IntQueue();
+    t.checkExpect(queue.isEmpty(), true);
+    t.checkException(new IllegalStateException("The queue is empty"), queue, "remove");
+    for (int i = 0; i < 10; i = i + 1) {
+      queue.add(i);
+    }
+    for (int i = 0; i < 8; i = i + 1) {
+      queue.remove();
+    }
+    // wrap around the end of the ring buffer and then grow it
+    for (int i = 10; i < 30; i = i + 1) {
+      queue.add(i);
+    }
+    t.checkExpect(queue.size(), 22);
+    t.checkExpect(queue.get(0), 8);
+    t.checkExpect(queue.remove(), 8);
+    t.checkExpect(queue.get(20), 29);
+    queue.clear();
+    t.checkExpect(queue.toArray(), new int[] {});
   }
 
   // test the method allFlooded in FloodItWorld class
   void testAllFlooded(Tester t) {
     this.initFloodIt();
-    this.world1.board = new ArrayList<ArrayList<Cell>>(Arrays.asList(
-        new ArrayList<Cell>(Arrays.asList(new Cell(0, 0, Color.RED), new Cell(0, 1, Color.RED))),
-        new ArrayList<Cell>(Arrays.asList(new Cell(1, 0, Color.RED), new Cell(1, 1, Color.RED)))));
-    this.world1.floodColor = Color.RED;
-    this.world2.floodColor = Color.RED;
+    this.world1.game = new FloodItGame(new FloodItBoard(new ArrayList<ArrayList<Cell>>(
+        Arrays.asList(
+            new ArrayList<Cell>(Arrays.asList(new Cell(0, 0, Color.RED), new Cell(0, 1, Color.RED))),
+            new ArrayList<Cell>(
+                Arrays.asList(new Cell(1, 0, Color.RED), new Cell(1, 1, Color.RED))))),
+        this.world1.colors), 3);
+    t.checkExpect(this.world1.allFlooded(), false);
+    this.world1.startGame();
     t.checkExpect(this.world2.allFlooded(), false);
     t.checkExpect(this.world1.allFlooded(), true);
+    this.world2.startGame();
+    t.checkExpect(this.world2.allFlooded(), false);
+  }
+
+  // test the method remaining in FloodItWorld class
+  void testRemaining(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world2.remaining(Color.GREEN), 2);
+    t.checkExpect(this.world2.remaining(Color.RED), 2);
+    t.checkExpect(this.world2.remaining(Color.YELLOW), 3);
+    t.checkExpect(this.world2.remaining(Color.ORANGE), 2);
+    t.checkExpect(this.world2.remaining(Color.BLACK), 0);
+    this.world2.startGame();
+    t.checkExpect(this.world2.remaining(Color.GREEN), 0);
+    this.world2.onMouseClicked(new Posn(30, 10));
+    t.checkExpect(this.world2.remaining(Color.RED), 0);
+    t.checkExpect(this.world2.game.board.floodedCount, 4);
+    // recoloring the flooded area does not change the counts
+    this.world2.onTick();
+    t.checkExpect(this.world2.remaining(Color.RED), 0);
+    t.checkExpect(this.world2.remaining(Color.YELLOW), 3);
   }
 
   // test the method onTick in FloodItWorld class
   void testOnTick(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
     this.world2.startGame();
-    this.world2.worklist.add(this.world2.board.get(0).get(0));
-    t.checkExpect(this.world2.worklist,
-        new ArrayList<Cell>(Arrays.asList(this.world2.board.get(0).get(0))));
+    this.world2.startWave();
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 0 });
     this.world2.onTick();
-    t.checkExpect(this.world2.worklist, new ArrayList<Cell>(
-        Arrays.asList(this.world2.board.get(0).get(1), this.world2.board.get(1).get(0))));
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 1, 3 });
+    this.world2.onTick();
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 3, 2, 4 });
+    t.checkExpect(this.world2.time, 2);
+
+    // recolor a batch of cells per tick
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    this.world2.waveBatch = 4;
+    this.world2.onTick();
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 4, 6, 5 });
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).getColor(), Color.RED);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).getColor(), Color.RED);
+
+    // recolor a whole diagonal per tick
+    this.initFloodIt();
+    this.world2.startGame();
+    this.world2.onMouseClicked(new Posn(30, 10));
+    this.world2.waveByDiagonal = true;
+    this.world2.onTick();
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 1, 3 });
+    this.world2.onTick();
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 2, 4, 6 });
+    t.checkExpect(this.world2.game.board.cellAt(1, 0).getColor(), Color.RED);
+    t.checkExpect(this.world2.game.board.cellAt(0, 2).getColor(), Color.RED);
+  }
+
+  // test the method diagonal in FloodItWorld class
+  void testDiagonal(Tester t) {
+    this.initFloodIt();
+    t.checkExpect(this.world2.diagonal(0), 0);
+    t.checkExpect(this.world2.diagonal(2), 2);
+    t.checkExpect(this.world2.diagonal(7), 3);
   }
 
   // test the method onKeyEvent in FloodItWorld class
   void testOnKeyEvent(Tester t) {
     this.initFloodIt();
-    this.world2.connectCells(3);
     this.world2.startGame();
-    this.world2.worklist.add(this.world2.board.get(0).get(0));
-    this.world2.clicks = 20;
+    this.world2.startWave();
+    this.world2.game.clicks = 20;
     this.world2.time = 20;
-    t.checkExpect(this.world2.worklist,
-        new ArrayList<Cell>(Arrays.asList(this.world2.board.get(0).get(0))));
-    t.checkExpect(this.world2.clicks, 20);
+    t.checkExpect(this.world2.worklist.toArray(), new int[] { 0 });
+    t.checkExpect(this.world2.game.clicks, 20);
     t.checkExpect(this.world2.time, 20);
     this.world2.onKeyEvent("r");
-    t.checkExpect(this.world2.worklist, new ArrayList<Cell>(Arrays.asList()));
-    t.checkExpect(this.world2.clicks, 0);
+    t.checkExpect(this.world2.worklist.isEmpty(), true);
+    t.checkExpect(this.world2.visited.isEmpty(), true);
+    t.checkExpect(this.world2.game.clicks, 0);
     t.checkExpect(this.world2.time, 0);
   }
 
@@ -903,6 +7632,16 @@ class ExamplesFloodIt {
     t.checkExpect(this.world2.lastScene("YOU XXX"), new WorldScene(310, 120));
     t.checkExpect(this.world2.lastScene("YOU WIN!"), ws1);
     t.checkExpect(this.world2.lastScene("YOU LOSE!"), ws2);
+
+    // the scene of a rasterized board fits the picture of the board
+    FloodItWorld world = new FloodItWorld(50, 3, 1);
+    world.rasterizer = BoardRasterizer.fitting(50, FloodItWorld.MAX_BOARD_PIXELS);
+    t.checkExpect(world.boardPixels(), 400);
+    WorldScene ws3 = new WorldScene(650, 460);
+    ws3.placeImageXY(new TextImage("YOU WIN!", 30, Color.BLACK), 325, 140);
+    ws3.placeImageXY(new TextImage("Score: " + Integer.toString(0), 20, Color.BLACK), 325, 280);
+    ws3.placeImageXY(new TextImage("Time: " + Integer.toString(0), 20, Color.BLACK), 325, 300);
+    t.checkExpect(world.lastScene("YOU WIN!"), ws3);
   }
 
   // test the method updateColor in Cell class
@@ -943,7 +7682,7 @@ class ExamplesFloodIt {
   // to start the game and render the world
   void testFloodIt(Tester t) {
     FloodItWorld world3 = new FloodItWorld(10, 5);
-    int sceneSize = world3.board.size();
+    int sceneSize = world3.game.board.size;
     world3.bigBang(sceneSize * 20 + 250, sceneSize * 20 + 60, 0.01);
   }
 }
\ No newline at end of file